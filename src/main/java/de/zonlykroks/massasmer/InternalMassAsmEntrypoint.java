@@ -1,8 +1,16 @@
 package de.zonlykroks.massasmer;
 
+import de.zonlykroks.massasmer.config.MassAsmConfigManager;
 import de.zonlykroks.massasmer.filter.Filters;
 import de.zonlykroks.massasmer.filter.impl.NamePatternFilter;
+import de.zonlykroks.massasmer.transformer.CallRedirector;
+import de.zonlykroks.massasmer.transformer.ConstantFoldingTransformer;
+import de.zonlykroks.massasmer.transformer.DebugInfoStripper;
+import de.zonlykroks.massasmer.transformer.Devirtualizer;
+import de.zonlykroks.massasmer.transformer.LogCallStripper;
+import de.zonlykroks.massasmer.transformer.SmallMethodInliner;
 import de.zonlykroks.massasmer.util.LoggerWrapper;
+import net.fabricmc.loader.impl.launch.FabricLauncher;
 import net.fabricmc.loader.impl.launch.FabricLauncherBase;
 import org.apache.logging.log4j.LogManager;
 import org.objectweb.asm.ClassVisitor;
@@ -12,6 +20,8 @@ import org.objectweb.asm.commons.AdviceAdapter;
 
 public class InternalMassAsmEntrypoint implements Runnable {
 
+    private static final LoggerWrapper LOGGER = new LoggerWrapper(LogManager.getLogger("Massasmer-Internal"), MassasmerPreLaunch.configManager.isLogEnabled());
+
     @SuppressWarnings("unused")
     public static final LoggerWrapper INTERNAL_TEST_LOGGER = new LoggerWrapper(LogManager.getLogger("Massasmer-test-logger"), true);
 
@@ -23,9 +33,130 @@ public class InternalMassAsmEntrypoint implements Runnable {
     private void registerInternalTransformers() {
         MassASMTransformer.registerVisitor(
                 "massasm-internal-inject-init-stdout",
-                Filters.exact(FabricLauncherBase.getLauncher().isDevelopment() ? "net.minecraft.client.Minecraft" : "net.minecraft.client.main.Main$2"),
+                Filters.exact(isDevelopment() ? "net.minecraft.client.Minecraft" : "net.minecraft.client.main.Main$2"),
                 (className, nextVisitor) -> new CreateTitlePrintTransformer(Opcodes.ASM9, nextVisitor, className)
         );
+
+        registerLogCallStripper();
+        registerConstantFolding();
+        registerInlining();
+        registerDevirtualization();
+        registerCallRedirects();
+        registerDebugInfoStripping();
+    }
+
+    // There is no launcher when pre-transforming offline, which always targets the production jar
+    private static boolean isDevelopment() {
+        FabricLauncher launcher = FabricLauncherBase.getLauncher();
+        return launcher != null && launcher.isDevelopment();
+    }
+
+    private void registerLogCallStripper() {
+        MassAsmConfigManager config = MassasmerPreLaunch.configManager;
+        String mode = config.getLogStripMode();
+        LogCallStripper.Mode stripMode;
+        switch (mode) {
+            case "off" -> {
+                return;
+            }
+            case "strip" -> stripMode = LogCallStripper.Mode.STRIP;
+            case "guard" -> stripMode = LogCallStripper.Mode.GUARD;
+            default -> {
+                // A typo must not silently remove log calls
+                LOGGER.error("Unknown log-strip-mode '{}', expected strip, guard or off; not stripping log calls", mode);
+                return;
+            }
+        }
+
+        // One registration per prefix keeps the stripper in the fast prefix lookup
+        for (String prefix : config.getLogStripTargets()) {
+            LogCallStripper.register(
+                    "massasm-internal-log-strip-" + prefix,
+                    Filters.startsWith(prefix),
+                    stripMode,
+                    config.getLogStripLevels()
+            );
+        }
+    }
+
+    private void registerConstantFolding() {
+        MassAsmConfigManager config = MassasmerPreLaunch.configManager;
+
+        for (String declaration : config.getConstantFoldValues()) {
+            try {
+                ConstantFoldingTransformer.declare(declaration);
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("Ignoring constant declaration '{}': {}", declaration, e.getMessage());
+            }
+        }
+
+        for (String prefix : config.getConstantFoldTargets()) {
+            ConstantFoldingTransformer.register(
+                    "massasm-internal-constant-fold-" + prefix,
+                    Filters.startsWith(prefix)
+            );
+        }
+    }
+
+    private void registerInlining() {
+        MassAsmConfigManager config = MassasmerPreLaunch.configManager;
+
+        for (String declaration : config.getInlineMethods()) {
+            try {
+                SmallMethodInliner.declare(declaration);
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("Ignoring inline declaration '{}': {}", declaration, e.getMessage());
+            }
+        }
+
+        for (String prefix : config.getInlineTargets()) {
+            SmallMethodInliner.register(
+                    "massasm-internal-inline-" + prefix,
+                    Filters.startsWith(prefix),
+                    config.getInlineMaxSize(),
+                    config.getInlineMaxGrowth()
+            );
+        }
+    }
+
+    private void registerDevirtualization() {
+        for (String prefix : MassasmerPreLaunch.configManager.getDevirtualizeTargets()) {
+            Devirtualizer.register(
+                    "massasm-internal-devirtualize-" + prefix,
+                    Filters.startsWith(prefix)
+            );
+        }
+    }
+
+    private void registerCallRedirects() {
+        MassAsmConfigManager config = MassasmerPreLaunch.configManager;
+
+        for (String declaration : config.getRedirectCalls()) {
+            try {
+                CallRedirector.declare(declaration);
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("Ignoring redirect declaration '{}': {}", declaration, e.getMessage());
+            }
+        }
+
+        for (String prefix : config.getRedirectTargets()) {
+            CallRedirector.register(
+                    "massasm-internal-redirect-" + prefix,
+                    Filters.startsWith(prefix)
+            );
+        }
+    }
+
+    private void registerDebugInfoStripping() {
+        MassAsmConfigManager config = MassasmerPreLaunch.configManager;
+
+        for (String prefix : config.getStripDebugTargets()) {
+            DebugInfoStripper.register(
+                    "massasm-internal-strip-debug-" + prefix,
+                    Filters.startsWith(prefix),
+                    config.isStripDebugKeepLines()
+            );
+        }
     }
 
     private static class CreateTitlePrintTransformer extends ClassVisitor {
@@ -1,38 +1,83 @@
 package de.zonlykroks.massasmer;
 
+import de.zonlykroks.massasmer.diagnostics.AllocationTracker;
+import de.zonlykroks.massasmer.diagnostics.ClassDumper;
+import de.zonlykroks.massasmer.diagnostics.JitInlineAnalyzer;
+import de.zonlykroks.massasmer.diagnostics.TransformTrace;
+import de.zonlykroks.massasmer.diagnostics.TransformerWatchdog;
+import de.zonlykroks.massasmer.exclusion.AutoExclusions;
 import de.zonlykroks.massasmer.filter.Filters;
+import de.zonlykroks.massasmer.filter.impl.EmptyFilter;
+import de.zonlykroks.massasmer.filter.impl.MappedNameFilter;
+import de.zonlykroks.massasmer.filter.impl.MemoizingFilter;
 import de.zonlykroks.massasmer.filter.impl.NamePatternFilter;
 import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import de.zonlykroks.massasmer.pattern.InsnPatterns;
+import de.zonlykroks.massasmer.prefetch.ClassPrefetcher;
+import de.zonlykroks.massasmer.pretransform.PreTransformedBundle;
+import de.zonlykroks.massasmer.storage.ClassByteStores;
+import de.zonlykroks.massasmer.storage.api.ClassByteStore;
+import de.zonlykroks.massasmer.util.ClassByteBuffers;
+import de.zonlykroks.massasmer.util.ClassHierarchyIndex;
+import de.zonlykroks.massasmer.util.CodeSourceIndex;
+import de.zonlykroks.massasmer.util.KnotClassBytes;
 import de.zonlykroks.massasmer.util.LoggerWrapper;
 import de.zonlykroks.massasmer.util.UnrecoverableMassASMRuntimeError;
 import lombok.experimental.Delegate;
+import net.fabricmc.loader.api.FabricLoader;
 import net.fabricmc.loader.impl.game.patch.GamePatch;
 import net.fabricmc.loader.impl.game.patch.GameTransformer;
-import net.fabricmc.loader.impl.launch.FabricLauncher;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 
 public class MassASMTransformer extends GameTransformer {
     private static final LoggerWrapper LOGGER = new LoggerWrapper(LogManager.getLogger("MassASMTransformer"), MassasmerPreLaunch.configManager.isLogEnabled());
+    private static final TransformerWatchdog WATCHDOG = new TransformerWatchdog(MassasmerPreLaunch.configManager);
+    private static final AllocationTracker ALLOCATIONS = new AllocationTracker(MassasmerPreLaunch.configManager);
+    private static final ClassDumper DUMPER = new ClassDumper(MassasmerPreLaunch.configManager);
+    private static final JitInlineAnalyzer JIT_ANALYZER = new JitInlineAnalyzer(MassasmerPreLaunch.configManager);
 
+    // Written only while registering, guarded by the class lock, and copied into the registry at freeze
     private static final Map<String, List<NamedTransformerEntry>> EXACT_TRANSFORMERS = new HashMap<>();
     private static final Map<String, List<NamedTransformerEntry>> PREFIX_TRANSFORMERS = new HashMap<>();
     private static final Map<String, List<NamedTransformerEntry>> SUFFIX_TRANSFORMERS = new HashMap<>();
     private static final List<NamedTransformerEntry> CONTAINS_TRANSFORMERS = new ArrayList<>();
     private static final List<NamedTransformerEntry> OTHER_TRANSFORMERS = new ArrayList<>();
+    // Indexed once their names are translated at freeze
+    private static final List<NamedTransformerEntry> MAPPED_TRANSFORMERS = new ArrayList<>();
 
-    private final Map<String, byte[]> additionalTransformedClasses = new HashMap<>();
+    private static final List<NamedTransformerEntry> REGISTERED_TRANSFORMERS = new ArrayList<>();
+
+    // Per-step bytes are needed by the dumper and the JIT analyzer, so they disable fusion
+    private static final boolean FUSE_VISITORS = MassasmerPreLaunch.configManager.isVisitorFusionEnabled()
+            && !DUMPER.isEnabled()
+            && !JIT_ANALYZER.isEnabled();
+    // One prepared pipeline per distinct set of matching transformers, which stays small in practice
+    private static final Map<MatchSignature, Pipeline> PIPELINES = new ConcurrentHashMap<>();
+
+    // Immutable once published, so loading threads read it without locking
+    private static volatile Registry registry = Registry.EMPTY;
+    private static volatile boolean frozen = false;
+
+    private static volatile PreTransformedBundle bundle;
+
+    private final ClassByteStore additionalTransformedClasses = ClassByteStores.create(MassasmerPreLaunch.configManager.getRetainedStorageMode());
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final ClassPrefetcher prefetcher = new ClassPrefetcher(MassasmerPreLaunch.configManager, this::prefetch);
 
     public MassASMTransformer(
             List<GamePatch> originalPatches,
@@ -73,35 +118,134 @@ public class MassASMTransformer extends GameTransformer {
         if (!MassasmerPreLaunch.configManager.getTransformerExclusionFilter().matches(className)) {
             return null;
         }
+        if (AutoExclusions.isExcluded(className)) {
+            // No transformer matched the package in earlier launches, only Fabric's own patches apply
+            return super.transform(className);
+        }
+
+        byte[] retained = additionalTransformedClasses.get(className);
+        if (retained != null) {
+            return retained;
+        }
 
-        if (additionalTransformedClasses.containsKey(className)) {
-            return additionalTransformedClasses.get(className);
+        // Another thread transforming the same class is waited for instead of duplicating its work.
+        // A nested request from the owning thread cannot wait on itself and transforms directly.
+        InFlight mine = new InFlight(Thread.currentThread(), new CompletableFuture<>());
+        InFlight existing = inFlight.putIfAbsent(className, mine);
+        if (existing != null) {
+            return existing.owner() == Thread.currentThread()
+                    ? transformUncached(className)
+                    : existing.await(className);
         }
 
+        try {
+            byte[] result = transformUncached(className);
+            mine.result().complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(className, mine);
+        }
+    }
+
+    private byte[] transformUncached(String className) {
+        byte[] retained = additionalTransformedClasses.get(className);
+        if (retained != null) {
+            return retained;
+        }
+
+        Registry current = registry;
+        MatchSignature signature = matchSignature(current, className);
+        if (AutoExclusions.isRecording()) {
+            AutoExclusions.record(className, !signature.isEmpty());
+        }
+        // No transformer can change the class, so its bytes are only worth reading to queue prefetches
+        if (signature.isEmpty() && !prefetcher.isActive()) {
+            return super.transform(className);
+        }
+
+        long allocationMark = ALLOCATIONS.mark();
         try {
             byte[] originalResult = super.transform(className);
-            if (originalResult != null) {
-                byte[] transformed = applyTransformers(className, originalResult);
-                if (transformed != null) {
-                    additionalTransformedClasses.put(className, transformed);
-                    return transformed;
-                }
-                return originalResult;
+            // Only bytes from Knot's own class path may be handed back in place of null
+            byte[] ownBytes = originalResult != null ? originalResult : prefetchedOrRead(className);
+            byte[] classBytes = ownBytes != null || signature.isEmpty() ? ownBytes : getClassBytesFromClassLoader(className);
+            if (classBytes == null) {
+                return null;
             }
 
-            byte[] classBytes = getClassBytesFromClassLoader(className);
-            if (classBytes != null) {
-                byte[] transformed = applyTransformers(className, classBytes);
-                if (transformed != null) {
-                    additionalTransformedClasses.put(className, transformed);
-                    return transformed;
-                }
+            byte[] transformed = signature.isEmpty() ? null : transformBytes(current, signature, className, classBytes);
+            ALLOCATIONS.record(allocationMark, transformed != null);
+            prefetcher.onLoaded(className, transformed != null ? transformed : classBytes);
+            if (transformed != null) {
+                additionalTransformedClasses.put(className, transformed);
+                return transformed;
             }
+            // Knot only reads a class itself when null is returned, so bytes already read from its
+            // class path are handed back instead of being read and inflated again
+            return ownBytes;
         } catch (Exception e) {
             throw new UnrecoverableMassASMRuntimeError("Error transforming " + className, e);
         }
+    }
+
+    // Runs on prefetch threads, so it only reads: the transformers, their diagnostics and the
+    // statistics all run on the loading thread once the class is requested
+    private byte[] prefetch(String className) {
+        // Only classes a transformer will touch are worth reading ahead
+        if (!MassasmerPreLaunch.configManager.getTransformerExclusionFilter().matches(className)
+                || AutoExclusions.isExcluded(className)
+                || matchSignature(className).isEmpty()) {
+            return null;
+        }
+        // Already loading, or patched by Fabric, whose bytes the loader gets from the game transformer
+        if (inFlight.containsKey(className) || super.transform(className) != null) {
+            return null;
+        }
+        return readClassBytes(className);
+    }
 
-        return null;
+    private byte[] prefetchedOrRead(String className) {
+        byte[] prefetched = prefetcher.take(className);
+        return prefetched != null ? prefetched : readClassBytes(className);
+    }
+
+    /**
+     * Stops reading referenced classes ahead, for example once startup is over and classes are
+     * rarely loaded. Has no effect unless prefetching is enabled.
+     */
+    public static void stopPrefetching() {
+        ClassPrefetcher.stopAll();
+    }
+
+    private static byte[] transformBytes(Registry current, MatchSignature signature, String className, byte[] classBytes) {
+        PreTransformedBundle currentBundle = bundle;
+        if (currentBundle != null) {
+            PreTransformedBundle.Lookup lookup = currentBundle.lookup(className, classBytes, signature.encode());
+            switch (lookup.result()) {
+                case TRANSFORMED -> {
+                    return lookup.bytes();
+                }
+                case UNCHANGED -> {
+                    return null;
+                }
+                case MISS -> {
+                    // Input or matching transformers changed since the bundle was built, transform live
+                }
+            }
+        }
+        return applyTransformers(current, signature, className, classBytes);
+    }
+
+    private byte[] readClassBytes(String className) {
+        try {
+            return KnotClassBytes.read(className);
+        } catch (IOException e) {
+            LOGGER.warn("Knot could not read {}, leaving it to Knot: {}", className, e.getMessage());
+            return null;
+        }
     }
 
     private byte[] getClassBytesFromClassLoader(String className) {
@@ -109,91 +253,277 @@ public class MassASMTransformer extends GameTransformer {
             String resourceName = className.replace('.', '/') + ".class";
             try (InputStream is = getClass().getClassLoader().getResourceAsStream(resourceName)) {
                 if (is == null) return null;
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                byte[] buffer = new byte[4096];
-                int bytesRead;
-                while ((bytesRead = is.read(buffer)) != -1) {
-                    baos.write(buffer, 0, bytesRead);
-                }
-                return baos.toByteArray();
+                return ClassByteBuffers.readFully(is);
             }
         } catch (IOException e) {
             return null;
         }
     }
 
-    private byte[] applyTransformers(String className, byte[] classBytes) {
+    /**
+     * Applies all registered transformers matching the class, in scheduled order.
+     *
+     * @param className  The fully qualified class name
+     * @param classBytes The bytes to transform
+     * @return The transformed bytes, or null if no transformer changed the class
+     */
+    public static byte[] applyTransformers(String className, byte[] classBytes) {
         if (classBytes == null) return null;
 
+        Registry current = registry;
+        return applyTransformers(current, matchSignature(current, className), className, classBytes);
+    }
+
+    private static byte[] applyTransformers(Registry current, MatchSignature signature, String className, byte[] classBytes) {
+        if (signature.isEmpty()) return null;
+
+        Pipeline pipeline = PIPELINES.computeIfAbsent(signature, key -> Pipeline.prepare(current, key));
+
         byte[] result = classBytes;
         boolean modified = false;
+        TransformTrace trace = DUMPER.isEnabled() || JIT_ANALYZER.isEnabled()
+                ? new TransformTrace(className, classBytes)
+                : null;
 
-        // Check exact matches first
-        List<NamedTransformerEntry> exact = EXACT_TRANSFORMERS.get(className);
-        if (exact != null) {
-            for (NamedTransformerEntry entry : exact) {
-                byte[] transformed = entry.transform(className, result);
+        // Node transformers of this run share analyses of methods that stay unchanged
+        MethodAnalysisCache enclosing = MethodAnalysisCache.enter();
+        try {
+            for (ScheduledStep step : pipeline.steps()) {
+                byte[] transformed = step.transform(className, result);
                 if (transformed != null) {
                     result = transformed;
                     modified = true;
+                    if (trace != null) trace.step(step.name(), transformed);
                 }
             }
+        } finally {
+            MethodAnalysisCache.exit(enclosing);
         }
 
-        // Check prefixes
-        for (Map.Entry<String, List<NamedTransformerEntry>> entry : PREFIX_TRANSFORMERS.entrySet()) {
+        if (modified && trace != null) {
+            JIT_ANALYZER.analyze(trace);
+            DUMPER.submit(trace);
+        }
+        return modified ? result : null;
+    }
+
+    private static MatchSignature matchSignature(String className) {
+        return matchSignature(registry, className);
+    }
+
+    /**
+     * Encodes which registered transformers match a class, so results recorded for it can be
+     * checked against the transformers that would apply now.
+     *
+     * @param className The fully qualified class name
+     * @return The encoded set of matching transformers, comparable while the registered transformers are the same
+     */
+    public static String encodedMatchSignature(String className) {
+        return matchSignature(className).encode();
+    }
+
+    // Name buckets contribute precomputed masks, only contains and other filters are evaluated
+    private static MatchSignature matchSignature(Registry current, String className) {
+        long[] bits = new long[current.words()];
+
+        or(bits, current.exact().get(className));
+
+        for (Map.Entry<String, long[]> entry : current.prefix().entrySet()) {
             if (className.startsWith(entry.getKey())) {
-                for (NamedTransformerEntry transformer : entry.getValue()) {
-                    byte[] transformed = transformer.transform(className, result);
-                    if (transformed != null) {
-                        result = transformed;
-                        modified = true;
-                    }
-                }
+                or(bits, entry.getValue());
             }
         }
 
-        for(Map.Entry<String, List<NamedTransformerEntry>> entry : SUFFIX_TRANSFORMERS.entrySet()) {
+        for (Map.Entry<String, long[]> entry : current.suffix().entrySet()) {
             if (className.endsWith(entry.getKey())) {
-                for (NamedTransformerEntry transformer : entry.getValue()) {
-                    byte[] transformed = transformer.transform(className, result);
-                    if (transformed != null) {
-                        result = transformed;
-                        modified = true;
-                    }
-                }
+                or(bits, entry.getValue());
             }
         }
 
-        for(NamedTransformerEntry transformer : CONTAINS_TRANSFORMERS) {
+        for (NamedTransformerEntry transformer : current.contains()) {
             if (transformer.matches(className)) {
-                byte[] transformed = transformer.transform(className, result);
-                if (transformed != null) {
-                    result = transformed;
-                    modified = true;
-                }
+                bits[transformer.id() >>> 6] |= 1L << transformer.id();
             }
         }
 
-        for(NamedTransformerEntry transformer : OTHER_TRANSFORMERS) {
+        for (NamedTransformerEntry transformer : current.other()) {
             if (transformer.matches(className)) {
-                byte[] transformed = transformer.transform(className, result);
-                if (transformed != null) {
-                    result = transformed;
-                    modified = true;
+                bits[transformer.id() >>> 6] |= 1L << transformer.id();
+            }
+        }
+        return new MatchSignature(bits);
+    }
+
+    private static void or(long[] bits, long[] mask) {
+        if (mask == null) return;
+        for (int i = 0; i < mask.length; i++) {
+            bits[i] |= mask[i];
+        }
+    }
+
+    /**
+     * Called once all mass-asm entrypoints have registered their transformers. Publishes an
+     * immutable snapshot of the registry; until then no transformer is applied, and afterwards
+     * registering throws.
+     */
+    public static synchronized void freeze() {
+        if (frozen) return;
+
+        InsnPatterns.install();
+        indexMappedTransformers();
+        memoizeSharedFilters();
+        checkOrderingConstraints();
+        int words = Math.max(1, (REGISTERED_TRANSFORMERS.size() + 63) >>> 6);
+        registry = new Registry(
+                words,
+                toMasks(EXACT_TRANSFORMERS, words),
+                toMasks(PREFIX_TRANSFORMERS, words),
+                toMasks(SUFFIX_TRANSFORMERS, words),
+                List.copyOf(CONTAINS_TRANSFORMERS),
+                List.copyOf(OTHER_TRANSFORMERS),
+                List.copyOf(REGISTERED_TRANSFORMERS)
+        );
+        frozen = true;
+
+        CodeSourceIndex.buildIfRequested();
+        ClassHierarchyIndex.buildIfRequested();
+
+        String bundlePath = MassasmerPreLaunch.configManager.getPreTransformedBundle();
+        if (!bundlePath.isEmpty()) {
+            bundle = PreTransformedBundle.open(FabricLoader.getInstance().getGameDir().resolve(bundlePath), getTransformerNames(),
+                    MassasmerPreLaunch.configManager.getTransformerConfigHash());
+        }
+    }
+
+    private static void indexMappedTransformers() {
+        for (NamedTransformerEntry entry : MAPPED_TRANSFORMERS) {
+            MappedNameFilter filter = (MappedNameFilter) entry.filter();
+            String runtimeName = filter.getRuntimeName();
+            LOGGER.info("Transformer '{}' targets {} as {}", entry.name(), filter.getClassName(), runtimeName);
+
+            EXACT_TRANSFORMERS.computeIfAbsent(runtimeName, k -> new ArrayList<>()).add(entry);
+            if (filter.isIncludeNested()) {
+                PREFIX_TRANSFORMERS.computeIfAbsent(runtimeName + "$", k -> new ArrayList<>()).add(entry);
+            }
+        }
+        MAPPED_TRANSFORMERS.clear();
+    }
+
+    // Filters evaluated per class (not indexed by name) and shared by several transformers are
+    // wrapped once, so each class is checked against them a single time
+    private static void memoizeSharedFilters() {
+        Map<TransformerFilter, Integer> uses = new IdentityHashMap<>();
+        for (NamedTransformerEntry entry : OTHER_TRANSFORMERS) {
+            uses.merge(entry.filter(), 1, Integer::sum);
+        }
+
+        Map<TransformerFilter, TransformerFilter> memoized = new IdentityHashMap<>();
+        uses.forEach((filter, count) -> {
+            if (count > 1 && !(filter instanceof MemoizingFilter) && !(filter instanceof EmptyFilter)) {
+                memoized.put(filter, Filters.memoize(filter));
+            }
+        });
+        if (memoized.isEmpty()) return;
+
+        OTHER_TRANSFORMERS.replaceAll(entry -> entry.withFilter(memoized.getOrDefault(entry.filter(), entry.filter())));
+        REGISTERED_TRANSFORMERS.replaceAll(entry -> entry.withFilter(memoized.getOrDefault(entry.filter(), entry.filter())));
+        LOGGER.info("Memoized {} filters shared by several transformers", memoized.size());
+    }
+
+    private static void checkOrderingConstraints() {
+        Set<String> names = new HashSet<>();
+        REGISTERED_TRANSFORMERS.forEach(entry -> names.add(entry.name()));
+
+        for (NamedTransformerEntry entry : REGISTERED_TRANSFORMERS) {
+            for (String other : entry.options().getRunsAfter()) {
+                if (!names.contains(other)) {
+                    LOGGER.warn("Transformer '{}' runs after unknown transformer '{}'", entry.name(), other);
+                }
+            }
+            for (String other : entry.options().getRunsBefore()) {
+                if (!names.contains(other)) {
+                    LOGGER.warn("Transformer '{}' runs before unknown transformer '{}'", entry.name(), other);
                 }
             }
         }
+    }
 
-        return modified ? result : null;
+    /**
+     * Gets the names of all registered transformers.
+     *
+     * @return The transformer names, in registration order
+     */
+    public static List<String> getTransformerNames() {
+        return registry.transformers().stream().map(NamedTransformerEntry::name).toList();
+    }
+
+    /**
+     * Checks if a transformer registered for an exact class name or a name prefix, including
+     * mapped class names, can match a class in the given package. Such packages are never
+     * excluded automatically, even if none of their classes matched so far.
+     *
+     * @param packageName The fully qualified package name, "" for the default package
+     * @return true if an exact or prefix target lies in the package
+     */
+    public static boolean isPackageTargeted(String packageName) {
+        Registry current = registry;
+        for (String className : current.exact().keySet()) {
+            int dot = className.lastIndexOf('.');
+            if ((dot < 0 ? "" : className.substring(0, dot)).equals(packageName)) return true;
+        }
+
+        String members = packageName.isEmpty() ? "" : packageName + ".";
+        for (String prefix : current.prefix().keySet()) {
+            // Either the prefix covers the whole package, or it names classes directly inside it
+            if (members.startsWith(prefix)) return true;
+            if (prefix.startsWith(members) && prefix.indexOf('.', members.length()) < 0) return true;
+        }
+        return false;
+    }
+
+    private static Map<String, long[]> toMasks(Map<String, List<NamedTransformerEntry>> buckets, int words) {
+        Map<String, long[]> masks = new HashMap<>();
+        buckets.forEach((key, entries) -> {
+            long[] mask = new long[words];
+            for (NamedTransformerEntry entry : entries) {
+                mask[entry.id() >>> 6] |= 1L << entry.id();
+            }
+            masks.put(key, mask);
+        });
+        return Collections.unmodifiableMap(masks);
     }
 
     /**
      * Register a raw bytecode transformer with a class filter and name
+     *
+     * @throws IllegalStateException if the registry is already frozen
      */
     public static void register(String name, TransformerFilter filter, ClassTransformer transformer) {
+        register(name, filter, TransformerOptions.DEFAULT, transformer);
+    }
+
+    /**
+     * Register a raw bytecode transformer with a class filter, name and ordering options
+     *
+     * @throws IllegalStateException if the registry is already frozen
+     */
+    public static void register(String name, TransformerFilter filter, TransformerOptions options, ClassTransformer transformer) {
+        add(name, filter, options, transformer, null);
+    }
+
+    private static synchronized void add(String name,
+                                         TransformerFilter filter,
+                                         TransformerOptions options,
+                                         ClassTransformer transformer,
+                                         VisitorProvider visitor) {
+        if (frozen) {
+            throw new IllegalStateException("Cannot register transformer '" + name + "', the registry is frozen");
+        }
+
         LOGGER.info("Registering transformer '{}' for {}", name, filter);
-        final NamedTransformerEntry entry = new NamedTransformerEntry(name, filter, transformer);
+        final NamedTransformerEntry entry = new NamedTransformerEntry(
+                REGISTERED_TRANSFORMERS.size(), name, filter, options, transformer, visitor);
+        REGISTERED_TRANSFORMERS.add(entry);
 
         if (filter instanceof NamePatternFilter npFilter) {
             String pattern = npFilter.getPattern();
@@ -204,6 +534,8 @@ public class MassASMTransformer extends GameTransformer {
                 case ENDS_WITH -> SUFFIX_TRANSFORMERS.computeIfAbsent(pattern, k -> new ArrayList<>()).add(entry);
                 case CONTAINS -> CONTAINS_TRANSFORMERS.add(entry);
             }
+        } else if (filter instanceof MappedNameFilter) {
+            MAPPED_TRANSFORMERS.add(entry);
         } else {
             LOGGER.warn("Transformer '{}' has no filter, it will be applied to all classes", name);
 
@@ -217,20 +549,75 @@ public class MassASMTransformer extends GameTransformer {
     public static void registerNodeTransformer(String name,
                                                TransformerFilter filter,
                                                ClassNodeTransformer transformer) {
-        register(name, filter, (className, classBytes) -> {
+        registerNodeTransformer(name, filter, TransformerOptions.DEFAULT, transformer);
+    }
+
+    /**
+     * Register a ClassNode based transformer with a class filter, name and ordering options
+     */
+    public static void registerNodeTransformer(String name,
+                                               TransformerFilter filter,
+                                               TransformerOptions options,
+                                               ClassNodeTransformer transformer) {
+        register(name, filter, options, nodePass(transformer, options));
+    }
+
+    /**
+     * Register a ClassNode based transformer using shared method analyses with a class filter and name
+     */
+    public static void registerNodeTransformer(String name,
+                                               TransformerFilter filter,
+                                               ContextNodeTransformer transformer) {
+        registerNodeTransformer(name, filter, TransformerOptions.DEFAULT, transformer);
+    }
+
+    /**
+     * Register a ClassNode based transformer using shared method analyses with a class filter, name and ordering options
+     */
+    public static void registerNodeTransformer(String name,
+                                               TransformerFilter filter,
+                                               TransformerOptions options,
+                                               ContextNodeTransformer transformer) {
+        register(name, filter, options, nodePass(transformer, options));
+    }
+
+    /**
+     * Wraps a ClassNode transformer into a raw transformer reading and writing the class with
+     * the cheapest flags its options allow.
+     *
+     * @param transformer The ClassNode transformer
+     * @param options     The options describing what it does
+     * @return The raw transformer, returning null if the class was not modified
+     */
+    public static ClassTransformer nodePass(ClassNodeTransformer transformer, TransformerOptions options) {
+        return nodePass((ContextNodeTransformer) context -> transformer.transform(context.getClassName(), context.getClassNode()), options);
+    }
+
+    /**
+     * Wraps a context-based ClassNode transformer into a raw transformer reading and writing the
+     * class with the cheapest flags its options allow.
+     *
+     * @param transformer The ClassNode transformer
+     * @param options     The options describing what it does
+     * @return The raw transformer, returning null if the class was not modified
+     */
+    public static ClassTransformer nodePass(ContextNodeTransformer transformer, TransformerOptions options) {
+        // A tree pass cannot copy methods from the reader, so the pool is only copied when code is untouched
+        PassFlags flags = PassFlags.of(List.of(options), false);
+        return (className, classBytes) -> {
             ClassReader reader = new ClassReader(classBytes);
             ClassNode node = new ClassNode();
-            reader.accept(node, ClassReader.EXPAND_FRAMES);
+            reader.accept(node, flags.readerFlags());
 
-            boolean modified = transformer.transform(className, node);
+            boolean modified = transformer.transform(new NodeTransformContext(className, node, MethodAnalysisCache.current()));
 
             if (modified) {
-                ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+                ClassWriter writer = flags.newWriter(reader);
                 node.accept(writer);
                 return writer.toByteArray();
             }
             return null;
-        });
+        };
     }
 
     /**
@@ -239,23 +626,175 @@ public class MassASMTransformer extends GameTransformer {
     public static void registerVisitor(String name,
                                        TransformerFilter filter,
                                        VisitorProvider visitorProvider) {
-        register(name, filter, (className, classBytes) -> {
-            ClassReader reader = new ClassReader(classBytes);
-            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-            ClassVisitor visitor = visitorProvider.createVisitor(className, writer);
-            reader.accept(visitor, ClassReader.EXPAND_FRAMES);
-            return writer.toByteArray();
-        });
+        registerVisitor(name, filter, TransformerOptions.DEFAULT, visitorProvider);
     }
 
-    // Internal named entry
-    private record NamedTransformerEntry(String name, TransformerFilter filter, ClassTransformer transformer) {
+    /**
+     * Register a visitor-based transformer with a class filter, name and ordering options.
+     * Adjacent visitor-based transformers in a class's schedule share one read/write pass.
+     */
+    public static void registerVisitor(String name,
+                                       TransformerFilter filter,
+                                       TransformerOptions options,
+                                       VisitorProvider visitorProvider) {
+        add(name, filter, options, visitorPass(visitorProvider, options), visitorProvider);
+    }
+
+    /**
+     * Wraps a visitor provider into a raw transformer running it in its own read/write pass with
+     * the cheapest flags its options allow.
+     *
+     * @param visitorProvider The visitor provider
+     * @param options         The options describing what the visitor does
+     * @return The raw transformer
+     */
+    public static ClassTransformer visitorPass(VisitorProvider visitorProvider, TransformerOptions options) {
+        PassFlags flags = PassFlags.of(List.of(options), true);
+        return (className, classBytes) -> runVisitors(className, classBytes, List.of(visitorProvider), flags);
+    }
+
+    private static byte[] runVisitors(String className, byte[] classBytes, List<VisitorProvider> visitorProviders, PassFlags flags) {
+        ClassReader reader = new ClassReader(classBytes);
+        // Passing the reader copies the constant pool and lets methods the visitors
+        // leave alone be copied as raw bytes instead of being re-serialized
+        ClassWriter writer = flags.newWriter(reader);
+
+        // Chained back to front, so the first provider sees the reader's events first
+        ClassVisitor visitor = writer;
+        for (int i = visitorProviders.size() - 1; i >= 0; i--) {
+            visitor = visitorProviders.get(i).createVisitor(className, visitor);
+        }
+        reader.accept(visitor, flags.readerFlags());
+        return writer.toByteArray();
+    }
+
+    // Immutable view of the registered transformers, shared by all loading threads.
+    // Name buckets map to bitmasks over transformer ids, transformers is indexed by id.
+    private record Registry(int words,
+                            Map<String, long[]> exact,
+                            Map<String, long[]> prefix,
+                            Map<String, long[]> suffix,
+                            List<NamedTransformerEntry> contains,
+                            List<NamedTransformerEntry> other,
+                            List<NamedTransformerEntry> transformers) {
+        static final Registry EMPTY = new Registry(1, Map.of(), Map.of(), Map.of(), List.of(), List.of(), List.of());
+    }
+
+    // Bitset of the ids of the transformers matching a class
+    private record MatchSignature(long[] bits) {
+        boolean isEmpty() {
+            for (long word : bits) {
+                if (word != 0) return false;
+            }
+            return true;
+        }
+
+        // Transformer ids in hex words, e.g. "5.0"
+        String encode() {
+            StringJoiner joiner = new StringJoiner(".");
+            for (long word : bits) {
+                joiner.add(Long.toHexString(word));
+            }
+            return joiner.toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MatchSignature other && Arrays.equals(bits, other.bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bits);
+        }
+    }
+
+    // Everything needed to transform a class with a given signature, prepared once
+    private record Pipeline(List<ScheduledStep> steps) {
+        static Pipeline prepare(Registry registry, MatchSignature signature) {
+            List<NamedTransformerEntry> matching = new ArrayList<>();
+            long[] bits = signature.bits();
+            for (int word = 0; word < bits.length; word++) {
+                long remaining = bits[word];
+                while (remaining != 0) {
+                    matching.add(registry.transformers().get((word << 6) + Long.numberOfTrailingZeros(remaining)));
+                    remaining &= remaining - 1;
+                }
+            }
+            return new Pipeline(TransformerScheduler.schedule(matching, FUSE_VISITORS));
+        }
+    }
+
+    // A transformation currently running on another thread
+    private record InFlight(Thread owner, CompletableFuture<byte[]> result) {
+        byte[] await(String className) {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                throw new UnrecoverableMassASMRuntimeError("Error transforming " + className + " on " + owner.getName(), e.getCause());
+            }
+        }
+    }
+
+    // Internal named entry, visitor is only set for visitor-based transformers
+    record NamedTransformerEntry(int id,
+                                 String name,
+                                 TransformerFilter filter,
+                                 TransformerOptions options,
+                                 ClassTransformer transformer,
+                                 VisitorProvider visitor) {
         boolean matches(String className) {
             return filter.matches(className);
         }
 
+        NamedTransformerEntry withFilter(TransformerFilter newFilter) {
+            return newFilter == filter ? this : new NamedTransformerEntry(id, name, newFilter, options, transformer, visitor);
+        }
+    }
+
+    // One step of a schedule: a single transformer, or several visitor-based ones fused into one pass
+    record ScheduledStep(String name, List<NamedTransformerEntry> entries, List<VisitorProvider> visitors, PassFlags flags) {
+        static ScheduledStep of(List<NamedTransformerEntry> entries) {
+            return new ScheduledStep(
+                    entries.stream().map(NamedTransformerEntry::name).collect(Collectors.joining("+")),
+                    entries,
+                    entries.size() > 1 ? entries.stream().map(NamedTransformerEntry::visitor).toList() : List.of(),
+                    PassFlags.of(entries.stream().map(NamedTransformerEntry::options).toList(), true));
+        }
+
         byte[] transform(String className, byte[] bytes) {
-            return transformer.transform(className, bytes);
+            if (!WATCHDOG.isEnabled()) {
+                return run(className, bytes);
+            }
+            if (WATCHDOG.isQuarantined(name)) {
+                return null;
+            }
+
+            long start = System.nanoTime();
+            try {
+                return run(className, bytes);
+            } finally {
+                WATCHDOG.record(name, className, System.nanoTime() - start);
+            }
+        }
+
+        private byte[] run(String className, byte[] bytes) {
+            if (entries.size() == 1) {
+                return entries.get(0).transformer().transform(className, bytes);
+            }
+            if (!WATCHDOG.isEnabled()) {
+                return runVisitors(className, bytes, visitors, flags);
+            }
+
+            // Members quarantined on their own elsewhere are left out of the fused pass
+            List<VisitorProvider> active = new ArrayList<>(visitors.size());
+            for (NamedTransformerEntry entry : entries) {
+                if (!WATCHDOG.isQuarantined(entry.name())) {
+                    active.add(entry.visitor());
+                }
+            }
+            // Flags stay those of the whole group, which is at least as conservative as needed
+            return active.isEmpty() ? null : runVisitors(className, bytes, active, flags);
         }
     }
 
@@ -273,6 +812,14 @@ public class MassASMTransformer extends GameTransformer {
         boolean transform(String className, ClassNode classNode);
     }
 
+    /**
+     * Interface for ClassNode transformers that analyze methods, sharing the analyses with the
+     * other node transformers running on the same class
+     */
+    public interface ContextNodeTransformer {
+        boolean transform(NodeTransformContext context);
+    }
+
     /**
      * Interface for creating ASM visitors
      */
@@ -1,6 +1,8 @@
 package de.zonlykroks.massasmer;
 
 import de.zonlykroks.massasmer.config.MassAsmConfigManager;
+import de.zonlykroks.massasmer.diagnostics.StartupReport;
+import de.zonlykroks.massasmer.exclusion.AutoExclusions;
 import de.zonlykroks.massasmer.util.LoggerWrapper;
 import de.zonlykroks.massasmer.util.UnrecoverableMassASMRuntimeError;
 import lombok.Getter;
@@ -38,6 +40,10 @@ public class MassasmerPreLaunch implements PreLaunchEntrypoint {
 
         LOGGER.info("Default transformer exclusions: {}", configManager.getExclusionsString());
 
+        if (configManager.isStartupReportEnabled()) {
+            StartupReport.writeOnShutdown(FabricLoader.getInstance().getGameDir().resolve("massasm-startup-report.txt"));
+        }
+
         MinecraftGameProvider provider = (MinecraftGameProvider)
                 ((FabricLoaderImpl) FabricLoader.getInstance()).getGameProvider();
 
@@ -97,5 +103,17 @@ public class MassasmerPreLaunch implements PreLaunchEntrypoint {
                     runnable.run();
                 });
         registryFrozen = true;
+        MassASMTransformer.freeze();
+
+        // Needs the final transformer set, and the game directory the offline runner does not have
+        AutoExclusions.start(
+                FabricLoader.getInstance().getGameDir().resolve("massasm-package-profile.properties"),
+                MassASMTransformer.getTransformerNames(),
+                configManager.getExclusionsString(),
+                AutoExclusions.Mode.parse(configManager.getAutoExclusionMode()),
+                configManager.getAutoExclusionLaunches(),
+                configManager.getAutoExclusionRecheck(),
+                MassASMTransformer::isPackageTargeted
+        );
     }
 }
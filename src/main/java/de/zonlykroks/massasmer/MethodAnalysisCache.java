@@ -0,0 +1,221 @@
+package de.zonlykroks.massasmer;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.Interpreter;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+import org.objectweb.asm.tree.analysis.Value;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Analyzer results of one class's methods, shared by the node transformers of one pipeline run.
+ * <p>
+ * Every node pass parses the class anew, so results are keyed by method name and descriptor and
+ * validated by a fingerprint of the method's instructions, try-catch blocks and max values. An
+ * analysis is only repeated once an earlier transformer actually changed the method; unchanged
+ * methods reuse the frames, with source values rebound to the current pass's instruction nodes.
+ */
+final class MethodAnalysisCache {
+    private static final ThreadLocal<MethodAnalysisCache> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Result> results = new HashMap<>();
+
+    /**
+     * Kinds of analysis that can be cached.
+     */
+    enum Kind {
+        BASIC(BasicInterpreter::new, false),
+        SOURCE(SourceInterpreter::new, true);
+
+        private final Supplier<Interpreter<? extends Value>> interpreter;
+        // Whether the values reference instruction nodes and must be rebound to a re-parsed method
+        private final boolean boundToInsns;
+
+        Kind(Supplier<Interpreter<? extends Value>> interpreter, boolean boundToInsns) {
+            this.interpreter = interpreter;
+            this.boundToInsns = boundToInsns;
+        }
+    }
+
+    private record Result(long fingerprint, AbstractInsnNode[] insns, Frame<? extends Value>[] frames, AnalyzerException failure) {}
+
+    /**
+     * Starts a pipeline run on this thread with an empty cache.
+     *
+     * @return The cache of the enclosing run, to pass to {@link #exit}
+     */
+    static MethodAnalysisCache enter() {
+        MethodAnalysisCache previous = CURRENT.get();
+        CURRENT.set(new MethodAnalysisCache());
+        return previous;
+    }
+
+    /**
+     * Ends the pipeline run on this thread.
+     *
+     * @param previous The value returned by the matching {@link #enter()}
+     */
+    static void exit(MethodAnalysisCache previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Gets the cache of the current pipeline run.
+     *
+     * @return The cache, or a new one not shared with anything if no run is active
+     */
+    static MethodAnalysisCache current() {
+        MethodAnalysisCache cache = CURRENT.get();
+        return cache != null ? cache : new MethodAnalysisCache();
+    }
+
+    @SuppressWarnings("unchecked")
+    <V extends Value> Frame<V>[] frames(String owner, MethodNode method, Kind kind) throws AnalyzerException {
+        String key = kind.ordinal() + method.name + method.desc;
+        long fingerprint = fingerprint(method);
+        AbstractInsnNode[] insns = method.instructions.toArray();
+
+        Result result = results.get(key);
+        if (result != null && result.fingerprint() == fingerprint) {
+            if (result.failure() != null) throw result.failure();
+            if (!kind.boundToInsns || Arrays.equals(result.insns(), insns)) {
+                return (Frame<V>[]) result.frames();
+            }
+
+            Frame<? extends Value>[] rebound = rebind((Frame<SourceValue>[]) result.frames(), result.insns(), insns);
+            results.put(key, new Result(fingerprint, insns, rebound, null));
+            return (Frame<V>[]) rebound;
+        }
+
+        try {
+            Frame<V>[] frames = new Analyzer<>((Interpreter<V>) kind.interpreter.get()).analyze(owner, method);
+            results.put(key, new Result(fingerprint, insns, frames, null));
+            return frames;
+        } catch (AnalyzerException e) {
+            results.put(key, new Result(fingerprint, insns, null, e));
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Frame<SourceValue>[] rebind(Frame<SourceValue>[] frames, AbstractInsnNode[] from, AbstractInsnNode[] to) {
+        Map<AbstractInsnNode, AbstractInsnNode> mapping = new IdentityHashMap<>(from.length * 2);
+        for (int i = 0; i < from.length; i++) {
+            mapping.put(from[i], to[i]);
+        }
+
+        Frame<SourceValue>[] rebound = (Frame<SourceValue>[]) new Frame<?>[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            Frame<SourceValue> frame = frames[i];
+            if (frame == null) continue;
+
+            Frame<SourceValue> copy = new Frame<>(frame);
+            for (int local = 0; local < copy.getLocals(); local++) {
+                copy.setLocal(local, rebind(copy.getLocal(local), mapping));
+            }
+            for (int slot = 0; slot < copy.getStackSize(); slot++) {
+                copy.setStack(slot, rebind(copy.getStack(slot), mapping));
+            }
+            rebound[i] = copy;
+        }
+        return rebound;
+    }
+
+    private static SourceValue rebind(SourceValue value, Map<AbstractInsnNode, AbstractInsnNode> mapping) {
+        if (value == null || value.insns.isEmpty()) return value;
+
+        Set<AbstractInsnNode> insns = new LinkedHashSet<>();
+        for (AbstractInsnNode insn : value.insns) {
+            insns.add(mapping.getOrDefault(insn, insn));
+        }
+        return new SourceValue(value.size, insns);
+    }
+
+    /**
+     * Hashes everything the analyzer looks at: instructions with their operands and positions,
+     * try-catch blocks and the max stack and locals.
+     *
+     * @param method The method
+     * @return The fingerprint
+     */
+    static long fingerprint(MethodNode method) {
+        InsnList list = method.instructions;
+        long hash = mix(mix(17, method.maxLocals), method.maxStack);
+
+        for (AbstractInsnNode insn = list.getFirst(); insn != null; insn = insn.getNext()) {
+            hash = mix(mix(hash, insn.getType()), insn.getOpcode());
+
+            if (insn instanceof VarInsnNode var) {
+                hash = mix(hash, var.var);
+            } else if (insn instanceof IntInsnNode operand) {
+                hash = mix(hash, operand.operand);
+            } else if (insn instanceof IincInsnNode iinc) {
+                hash = mix(mix(hash, iinc.var), iinc.incr);
+            } else if (insn instanceof TypeInsnNode type) {
+                hash = mix(hash, type.desc.hashCode());
+            } else if (insn instanceof FieldInsnNode field) {
+                hash = mix(mix(mix(hash, field.owner.hashCode()), field.name.hashCode()), field.desc.hashCode());
+            } else if (insn instanceof MethodInsnNode call) {
+                hash = mix(mix(mix(hash, call.owner.hashCode()), call.name.hashCode()), call.desc.hashCode());
+            } else if (insn instanceof InvokeDynamicInsnNode indy) {
+                hash = mix(mix(mix(hash, indy.name.hashCode()), indy.desc.hashCode()), Arrays.hashCode(indy.bsmArgs));
+            } else if (insn instanceof LdcInsnNode ldc) {
+                hash = mix(hash, ldc.cst.hashCode());
+            } else if (insn instanceof JumpInsnNode jump) {
+                hash = mix(hash, list.indexOf(jump.label));
+            } else if (insn instanceof TableSwitchInsnNode table) {
+                hash = mix(mix(mix(hash, table.min), table.max), list.indexOf(table.dflt));
+                for (LabelNode label : table.labels) hash = mix(hash, list.indexOf(label));
+            } else if (insn instanceof LookupSwitchInsnNode lookup) {
+                hash = mix(hash, list.indexOf(lookup.dflt));
+                for (int key : lookup.keys) hash = mix(hash, key);
+                for (LabelNode label : lookup.labels) hash = mix(hash, list.indexOf(label));
+            } else if (insn instanceof MultiANewArrayInsnNode array) {
+                hash = mix(mix(hash, array.desc.hashCode()), array.dims);
+            }
+        }
+
+        for (TryCatchBlockNode block : method.tryCatchBlocks) {
+            hash = mix(mix(mix(hash, list.indexOf(block.start)), list.indexOf(block.end)), list.indexOf(block.handler));
+            hash = mix(hash, block.type == null ? 0 : block.type.hashCode());
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+}
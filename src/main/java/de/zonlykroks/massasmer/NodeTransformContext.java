@@ -0,0 +1,55 @@
+package de.zonlykroks.massasmer;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+/**
+ * What a {@link MassASMTransformer.ContextNodeTransformer} gets to work with: the class, and data-flow
+ * analyses of its methods shared with the other node transformers running on the same class.
+ * <p>
+ * Analyses are computed lazily, at most once per method and pipeline run. A transformer that
+ * changes a method's instructions invalidates its results; the next request analyzes it again.
+ * The returned frames are shared and must not be modified.
+ */
+@Getter
+public final class NodeTransformContext {
+    private final String className;
+    private final ClassNode classNode;
+    @Getter(AccessLevel.NONE)
+    private final MethodAnalysisCache analyses;
+
+    NodeTransformContext(String className, ClassNode classNode, MethodAnalysisCache analyses) {
+        this.className = className;
+        this.classNode = classNode;
+        this.analyses = analyses;
+    }
+
+    /**
+     * Gets the frames computed by an {@code Analyzer} with a {@code BasicInterpreter}.
+     *
+     * @param method A method of this context's class
+     * @return The frames, indexed like the method's instructions, null for unreachable ones
+     * @throws AnalyzerException if the method cannot be analyzed
+     */
+    public Frame<BasicValue>[] basicFrames(MethodNode method) throws AnalyzerException {
+        return analyses.frames(classNode.name, method, MethodAnalysisCache.Kind.BASIC);
+    }
+
+    /**
+     * Gets the frames computed by an {@code Analyzer} with a {@code SourceInterpreter}, telling which
+     * instructions may have produced each local and stack value.
+     *
+     * @param method A method of this context's class
+     * @return The frames, indexed like the method's instructions, null for unreachable ones
+     * @throws AnalyzerException if the method cannot be analyzed
+     */
+    public Frame<SourceValue>[] sourceFrames(MethodNode method) throws AnalyzerException {
+        return analyses.frames(classNode.name, method, MethodAnalysisCache.Kind.SOURCE);
+    }
+}
@@ -0,0 +1,67 @@
+package de.zonlykroks.massasmer;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.util.List;
+
+/**
+ * The cheapest {@code ClassReader}/{@code ClassWriter} flags for a single read/write pass,
+ * derived from what the transformers in that pass declared in their {@link TransformerOptions}.
+ *
+ * @param readerFlags      The flags for {@link ClassReader#accept}
+ * @param writerFlags      The flags for the {@link ClassWriter}
+ * @param copyConstantPool Whether the writer is created from the reader, copying its constant pool
+ */
+record PassFlags(int readerFlags, int writerFlags, boolean copyConstantPool) {
+    /**
+     * Combines the needs of all transformers sharing a pass.
+     *
+     * @param options        The options of the transformers in the pass
+     * @param copyWhenCoding Whether the constant pool is copied even if code changes, which pays off
+     *                       when the pass is driven by the reader and can copy untouched methods
+     * @return The flags for the pass
+     */
+    static PassFlags of(List<TransformerOptions> options, boolean copyWhenCoding) {
+        boolean expandFrames = false;
+        boolean touchesCode = false;
+        boolean changesStackShape = false;
+        boolean discardsDebugInfo = true;
+        for (TransformerOptions option : options) {
+            expandFrames |= option.isExpandFrames();
+            touchesCode |= option.isTouchesCode();
+            changesStackShape |= option.isTouchesCode() && option.isChangesStackShape();
+            discardsDebugInfo &= option.isDiscardsDebugInfo();
+        }
+
+        int writerFlags = 0;
+        if (changesStackShape) {
+            writerFlags = ClassWriter.COMPUTE_FRAMES;
+        } else if (touchesCode) {
+            writerFlags = ClassWriter.COMPUTE_MAXS;
+        }
+
+        int readerFlags = 0;
+        if (expandFrames) {
+            readerFlags |= ClassReader.EXPAND_FRAMES;
+        } else if (changesStackShape) {
+            // Recomputed by the writer anyway, unless a transformer reads them
+            readerFlags |= ClassReader.SKIP_FRAMES;
+        }
+        if (discardsDebugInfo) {
+            readerFlags |= ClassReader.SKIP_DEBUG;
+        }
+
+        return new PassFlags(readerFlags, writerFlags, copyWhenCoding || !touchesCode);
+    }
+
+    /**
+     * Creates the writer for a pass.
+     *
+     * @param reader The reader of the pass
+     * @return A new writer
+     */
+    ClassWriter newWriter(ClassReader reader) {
+        return copyConstantPool ? new ClassWriter(reader, writerFlags) : new ClassWriter(writerFlags);
+    }
+}
@@ -0,0 +1,165 @@
+package de.zonlykroks.massasmer;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Options of a registered transformer.
+ * <p>
+ * Of the transformers matching a class, lower priorities run first and equal priorities keep
+ * registration order. {@code runsAfter}/{@code runsBefore} name other transformers and take
+ * precedence over priorities; constraints on transformers that do not match the class are ignored.
+ * <p>
+ * The remaining options describe what a visitor or ClassNode transformer does to a class, and are
+ * used to pick the cheapest {@code ClassReader}/{@code ClassWriter} flags. The defaults assume the
+ * worst: leaving them untouched is always safe, declaring less than a transformer does is not.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TransformerOptions {
+    /**
+     * Priority 0, no ordering constraints, fusible, and may do anything to the class.
+     */
+    public static final TransformerOptions DEFAULT = builder().build();
+
+    private final int priority;
+    private final Set<String> runsAfter;
+    private final Set<String> runsBefore;
+    private final boolean fusible;
+    private final boolean expandFrames;
+    private final boolean touchesCode;
+    private final boolean changesStackShape;
+    private final boolean discardsDebugInfo;
+
+    /**
+     * Creates a builder starting from the default options.
+     *
+     * @return A new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private int priority = 0;
+        private final Set<String> runsAfter = new LinkedHashSet<>();
+        private final Set<String> runsBefore = new LinkedHashSet<>();
+        private boolean fusible = true;
+        private boolean expandFrames = true;
+        private boolean touchesCode = true;
+        private boolean changesStackShape = true;
+        private boolean discardsDebugInfo = false;
+
+        private Builder() {}
+
+        /**
+         * Sets the priority. Lower priorities run first.
+         *
+         * @param priority The priority, 0 by default
+         * @return This builder
+         */
+        public Builder priority(int priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Makes the transformer run after the named transformers whenever both match a class.
+         *
+         * @param transformerNames The names of the transformers to run after
+         * @return This builder
+         */
+        public Builder runsAfter(String... transformerNames) {
+            runsAfter.addAll(Arrays.asList(transformerNames));
+            return this;
+        }
+
+        /**
+         * Makes the transformer run before the named transformers whenever both match a class.
+         *
+         * @param transformerNames The names of the transformers to run before
+         * @return This builder
+         */
+        public Builder runsBefore(String... transformerNames) {
+            runsBefore.addAll(Arrays.asList(transformerNames));
+            return this;
+        }
+
+        /**
+         * Sets whether a visitor-based transformer may share a single read/write pass with the
+         * visitor-based transformers scheduled next to it. Disable this for visitors that need to see
+         * the previous transformer's output exactly as written, e.g. with recomputed frames.
+         *
+         * @param fusible Whether the transformer may be fused, true by default
+         * @return This builder
+         */
+        public Builder fusible(boolean fusible) {
+            this.fusible = fusible;
+            return this;
+        }
+
+        /**
+         * Sets whether the transformer reads stack map frames and needs them expanded.
+         *
+         * @param expandFrames Whether frames must be expanded, true by default
+         * @return This builder
+         */
+        public Builder expandFrames(boolean expandFrames) {
+            this.expandFrames = expandFrames;
+            return this;
+        }
+
+        /**
+         * Sets whether the transformer changes method bytecode. Transformers that only rename, add
+         * fields or change access flags do not, and their classes are written without recomputing
+         * anything, copying the constant pool and untouched methods as they are.
+         *
+         * @param touchesCode Whether method code may change, true by default
+         * @return This builder
+         */
+        public Builder touchesCode(boolean touchesCode) {
+            this.touchesCode = touchesCode;
+            return this;
+        }
+
+        /**
+         * Sets whether changed code may alter control flow or the types on the stack and in locals,
+         * which requires stack map frames to be recomputed. Without it only max stack and locals are.
+         * Only relevant if the transformer touches code.
+         *
+         * @param changesStackShape Whether frames must be recomputed, true by default
+         * @return This builder
+         */
+        public Builder changesStackShape(boolean changesStackShape) {
+            this.changesStackShape = changesStackShape;
+            return this;
+        }
+
+        /**
+         * Sets whether the transformer drops debug information (line numbers, local variable names)
+         * anyway, so the class can be read without it.
+         *
+         * @param discardsDebugInfo Whether debug information may be skipped, false by default
+         * @return This builder
+         */
+        public Builder discardsDebugInfo(boolean discardsDebugInfo) {
+            this.discardsDebugInfo = discardsDebugInfo;
+            return this;
+        }
+
+        /**
+         * Builds the options.
+         *
+         * @return The immutable options
+         */
+        public TransformerOptions build() {
+            return new TransformerOptions(priority, Set.copyOf(runsAfter), Set.copyOf(runsBefore), fusible,
+                    expandFrames, touchesCode, changesStackShape, discardsDebugInfo);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package de.zonlykroks.massasmer;
+
+import de.zonlykroks.massasmer.MassASMTransformer.NamedTransformerEntry;
+import de.zonlykroks.massasmer.MassASMTransformer.ScheduledStep;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Turns the set of transformers matching a class into the order they run in, and groups
+ * adjacent visitor-based transformers into fused single-pass steps.
+ */
+final class TransformerScheduler {
+    private static final Comparator<NamedTransformerEntry> PRIORITY_ORDER =
+            Comparator.comparingInt((NamedTransformerEntry entry) -> entry.options().getPriority())
+                    .thenComparingInt(NamedTransformerEntry::id);
+
+    private TransformerScheduler() {}
+
+    /**
+     * Computes the schedule for a set of matching transformers.
+     *
+     * @param matching The transformers matching a class, in any order
+     * @param fuse     Whether adjacent fusible visitor transformers may share a pass
+     * @return The steps to run, in order
+     */
+    static List<ScheduledStep> schedule(List<NamedTransformerEntry> matching, boolean fuse) {
+        List<NamedTransformerEntry> ordered = order(matching);
+
+        List<ScheduledStep> steps = new ArrayList<>();
+        List<NamedTransformerEntry> group = new ArrayList<>();
+        for (NamedTransformerEntry entry : ordered) {
+            if (fuse && entry.visitor() != null && entry.options().isFusible()) {
+                group.add(entry);
+                continue;
+            }
+            flush(group, steps);
+            steps.add(ScheduledStep.of(List.of(entry)));
+        }
+        flush(group, steps);
+        return List.copyOf(steps);
+    }
+
+    /**
+     * Sorts transformers topologically by their runs-after/runs-before constraints, breaking ties
+     * by priority and then registration order. Constraints forming a cycle are dropped with an error.
+     *
+     * @param matching The transformers to sort
+     * @return The sorted transformers
+     */
+    static List<NamedTransformerEntry> order(List<NamedTransformerEntry> matching) {
+        Map<String, List<NamedTransformerEntry>> byName = new HashMap<>();
+        for (NamedTransformerEntry entry : matching) {
+            byName.computeIfAbsent(entry.name(), k -> new ArrayList<>()).add(entry);
+        }
+
+        Map<NamedTransformerEntry, List<NamedTransformerEntry>> successors = new HashMap<>();
+        Map<NamedTransformerEntry, Integer> inDegree = new HashMap<>();
+        for (NamedTransformerEntry entry : matching) {
+            inDegree.putIfAbsent(entry, 0);
+            for (String before : entry.options().getRunsAfter()) {
+                for (NamedTransformerEntry predecessor : byName.getOrDefault(before, List.of())) {
+                    addEdge(predecessor, entry, successors, inDegree);
+                }
+            }
+            for (String after : entry.options().getRunsBefore()) {
+                for (NamedTransformerEntry successor : byName.getOrDefault(after, List.of())) {
+                    addEdge(entry, successor, successors, inDegree);
+                }
+            }
+        }
+
+        PriorityQueue<NamedTransformerEntry> ready = new PriorityQueue<>(PRIORITY_ORDER);
+        inDegree.forEach((entry, degree) -> {
+            if (degree == 0) ready.add(entry);
+        });
+
+        List<NamedTransformerEntry> ordered = new ArrayList<>(matching.size());
+        while (!ready.isEmpty()) {
+            NamedTransformerEntry entry = ready.poll();
+            ordered.add(entry);
+            for (NamedTransformerEntry successor : successors.getOrDefault(entry, List.of())) {
+                if (inDegree.merge(successor, -1, Integer::sum) == 0) {
+                    ready.add(successor);
+                }
+            }
+        }
+
+        if (ordered.size() < inDegree.size()) {
+            List<NamedTransformerEntry> cyclic = new ArrayList<>();
+            inDegree.forEach((entry, degree) -> {
+                if (degree > 0) cyclic.add(entry);
+            });
+            cyclic.sort(PRIORITY_ORDER);
+            MassasmerPreLaunch.LOGGER.error("Ordering constraints between {} form a cycle, running them by priority",
+                    cyclic.stream().map(NamedTransformerEntry::name).toList());
+            ordered.addAll(cyclic);
+        }
+        return ordered;
+    }
+
+    private static void addEdge(NamedTransformerEntry from, NamedTransformerEntry to,
+                                Map<NamedTransformerEntry, List<NamedTransformerEntry>> successors,
+                                Map<NamedTransformerEntry, Integer> inDegree) {
+        if (from == to) return;
+        successors.computeIfAbsent(from, k -> new ArrayList<>()).add(to);
+        inDegree.merge(to, 1, Integer::sum);
+        inDegree.putIfAbsent(from, 0);
+    }
+
+    private static void flush(List<NamedTransformerEntry> group, List<ScheduledStep> steps) {
+        if (group.isEmpty()) return;
+        steps.add(ScheduledStep.of(List.copyOf(group)));
+        group.clear();
+    }
+}
@@ -10,14 +10,70 @@ import org.apache.logging.log4j.Logger;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 
 public class MassAsmConfigManager {
     private final String KEY_ATTACH = "allow-attach-non-fail-hard";
     private final String KEY_LOG = "enable-log";
     private final String KEY_EXCLUSIONS = "transformer-exclusions";
+    private final String KEY_LOG_STRIP_MODE = "log-strip-mode";
+    private final String KEY_LOG_STRIP_TARGETS = "log-strip-targets";
+    private final String KEY_LOG_STRIP_LEVELS = "log-strip-levels";
+    private final String KEY_CONSTANT_FOLD_VALUES = "constant-fold-values";
+    private final String KEY_CONSTANT_FOLD_TARGETS = "constant-fold-targets";
+    private final String KEY_INLINE_METHODS = "inline-methods";
+    private final String KEY_INLINE_TARGETS = "inline-targets";
+    private final String KEY_INLINE_MAX_SIZE = "inline-max-size";
+    private final String KEY_INLINE_MAX_GROWTH = "inline-max-growth";
+    private final String KEY_DEVIRTUALIZE_TARGETS = "devirtualize-targets";
+    private final String KEY_REDIRECT_CALLS = "redirect-calls";
+    private final String KEY_REDIRECT_TARGETS = "redirect-targets";
+    private final String KEY_STRIP_DEBUG_TARGETS = "strip-debug-targets";
+    private final String KEY_STRIP_DEBUG_KEEP_LINES = "strip-debug-keep-lines";
+    private final String KEY_STARTUP_REPORT = "startup-report";
+    private final String KEY_WATCHDOG = "watchdog-enabled";
+    private final String KEY_WATCHDOG_CLASS_BUDGET = "watchdog-class-budget-ms";
+    private final String KEY_WATCHDOG_TRANSFORMER_BUDGET = "watchdog-transformer-budget-ms";
+    private final String KEY_WATCHDOG_QUARANTINE = "watchdog-quarantine";
+    private final String KEY_WATCHDOG_QUARANTINE_OVERRUNS = "watchdog-quarantine-overruns";
+    private final String KEY_ALLOCATION_TRACKING = "allocation-tracking";
+    private final String KEY_RETAINED_STORAGE = "retained-storage";
+    private final String KEY_PRETRANSFORMED_BUNDLE = "pretransformed-bundle";
+    private final String KEY_DUMP = "dump-enabled";
+    private final String KEY_DUMP_DIR = "dump-dir";
+    private final String KEY_FUSE_VISITORS = "fuse-visitors";
+    private final String KEY_PREFETCH = "prefetch";
+    private final String KEY_PREFETCH_THREADS = "prefetch-threads";
+    private final String KEY_PREFETCH_QUEUE_SIZE = "prefetch-queue-size";
+    private final String KEY_PREFETCH_LIMIT = "prefetch-limit";
+    private final String KEY_PREFETCH_MAX_SECONDS = "prefetch-max-seconds";
+    private final String KEY_JIT_ANALYSIS = "jit-analysis";
+    private final String KEY_JIT_MAX_INLINE_SIZE = "jit-max-inline-size";
+    private final String KEY_JIT_FREQ_INLINE_SIZE = "jit-freq-inline-size";
+    private final String KEY_JIT_HUGE_METHOD_LIMIT = "jit-huge-method-limit";
+    private final String KEY_LIVE_SELF_ATTACH = "live-self-attach";
+    private final String KEY_LIVE_BATCH_SIZE = "live-batch-size";
+    private final String KEY_AUTO_EXCLUSION = "auto-exclusion";
+    private final String KEY_AUTO_EXCLUSION_LAUNCHES = "auto-exclusion-launches";
+    private final String KEY_AUTO_EXCLUSION_RECHECK = "auto-exclusion-recheck";
+
+    // Keys that change what a transformer does to a class, hashed to validate pre-transformed bundles
+    private final List<String> TRANSFORMER_KEYS = List.of(
+            KEY_EXCLUSIONS, KEY_LOG_STRIP_MODE, KEY_LOG_STRIP_TARGETS, KEY_LOG_STRIP_LEVELS,
+            KEY_CONSTANT_FOLD_VALUES, KEY_CONSTANT_FOLD_TARGETS,
+            KEY_INLINE_METHODS, KEY_INLINE_TARGETS, KEY_INLINE_MAX_SIZE, KEY_INLINE_MAX_GROWTH,
+            KEY_DEVIRTUALIZE_TARGETS, KEY_REDIRECT_CALLS, KEY_REDIRECT_TARGETS,
+            KEY_STRIP_DEBUG_TARGETS, KEY_STRIP_DEBUG_KEEP_LINES, KEY_JIT_HUGE_METHOD_LIMIT
+    );
 
     // Default exclusions that will be used only when creating the config file for the first time
     private static final String DEFAULT_EXCLUSIONS =
@@ -33,9 +89,10 @@ public class MassAsmConfigManager {
                     "org.apache.http," +                          // Apache HTTP
                     "lombok";                                     // Lombok
 
-    private final Path CONFIG_FILE = FabricLoader.getInstance()
-            .getConfigDir()
-            .resolve("massasm.properties");
+    // The offline pre-transform runner has no Fabric game directory and points this elsewhere
+    private final Path CONFIG_FILE = System.getProperty("massasm.config") != null
+            ? Path.of(System.getProperty("massasm.config"))
+            : FabricLoader.getInstance().getConfigDir().resolve("massasm.properties");
     private final Properties PROPS = new Properties();
     private final TransformerFilter exclusionFilter;
 
@@ -122,6 +179,397 @@ public class MassAsmConfigManager {
         return exclusionFilter;
     }
 
+    /**
+     * Gets how the shipped log call stripper should treat debug/trace calls.
+     *
+     * @return "strip", "guard" or "off" (the default)
+     */
+    public String getLogStripMode() {
+        return PROPS.getProperty(KEY_LOG_STRIP_MODE, "off").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the class name prefixes the log call stripper is applied to.
+     *
+     * @return A list of package prefixes, empty if none are configured
+     */
+    public List<String> getLogStripTargets() {
+        return splitList(PROPS.getProperty(KEY_LOG_STRIP_TARGETS, ""));
+    }
+
+    /**
+     * Gets the logging levels whose calls are stripped or guarded.
+     *
+     * @return A list of lower-case level names, "debug" and "trace" by default
+     */
+    public List<String> getLogStripLevels() {
+        return splitList(PROPS.getProperty(KEY_LOG_STRIP_LEVELS, "debug,trace").toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Gets the declared constant fields and methods.
+     *
+     * @return A list of declarations like {@code com.example.Config#DEBUG=false}, empty if none are configured
+     */
+    public List<String> getConstantFoldValues() {
+        return splitList(PROPS.getProperty(KEY_CONSTANT_FOLD_VALUES, ""));
+    }
+
+    /**
+     * Gets the class name prefixes in which declared constants are folded.
+     *
+     * @return A list of package prefixes, empty if none are configured
+     */
+    public List<String> getConstantFoldTargets() {
+        return splitList(PROPS.getProperty(KEY_CONSTANT_FOLD_TARGETS, ""));
+    }
+
+    /**
+     * Gets the methods whose calls should be inlined.
+     *
+     * @return A list of declarations like {@code com.example.MathUtil#clamp(III)I}, empty if none are configured
+     */
+    public List<String> getInlineMethods() {
+        return splitList(PROPS.getProperty(KEY_INLINE_METHODS, ""));
+    }
+
+    /**
+     * Gets the class name prefixes in which calls to declared methods are inlined.
+     *
+     * @return A list of package prefixes, empty if none are configured
+     */
+    public List<String> getInlineTargets() {
+        return splitList(PROPS.getProperty(KEY_INLINE_TARGETS, ""));
+    }
+
+    /**
+     * Gets the maximum bytecode size of a method to inline.
+     *
+     * @return The size in bytes, 35 by default
+     */
+    public int getInlineMaxSize() {
+        return (int) getLong(KEY_INLINE_MAX_SIZE, 35);
+    }
+
+    /**
+     * Gets how many bytes inlining may add to a single calling method.
+     *
+     * @return The growth in bytes, 2000 by default
+     */
+    public int getInlineMaxGrowth() {
+        return (int) getLong(KEY_INLINE_MAX_GROWTH, 2000);
+    }
+
+    /**
+     * Gets the class name prefixes in which calls to single-implementation types are devirtualized.
+     *
+     * @return A list of package prefixes, empty if none are configured
+     */
+    public List<String> getDevirtualizeTargets() {
+        return splitList(PROPS.getProperty(KEY_DEVIRTUALIZE_TARGETS, ""));
+    }
+
+    /**
+     * Gets the declared call redirects.
+     *
+     * @return A list of declarations like {@code java.lang.Math#floor(D)D=com.example.FastMath#floor}, empty if none are configured
+     */
+    public List<String> getRedirectCalls() {
+        return splitList(PROPS.getProperty(KEY_REDIRECT_CALLS, ""));
+    }
+
+    /**
+     * Gets the class name prefixes in which declared calls are redirected.
+     *
+     * @return A list of package prefixes, empty if none are configured
+     */
+    public List<String> getRedirectTargets() {
+        return splitList(PROPS.getProperty(KEY_REDIRECT_TARGETS, ""));
+    }
+
+    /**
+     * Gets the class name prefixes whose debug information is stripped.
+     *
+     * @return A list of package prefixes, empty if none are configured
+     */
+    public List<String> getStripDebugTargets() {
+        return splitList(PROPS.getProperty(KEY_STRIP_DEBUG_TARGETS, ""));
+    }
+
+    /**
+     * Check if line numbers are kept when stripping debug information.
+     *
+     * @return true by default, so stack traces keep their line numbers
+     */
+    public boolean isStripDebugKeepLines() {
+        return Boolean.parseBoolean(PROPS.getProperty(KEY_STRIP_DEBUG_KEEP_LINES, "true"));
+    }
+
+    /**
+     * Check if the startup report should be written when the game exits.
+     * @return true if enabled, false by default
+     */
+    public boolean isStartupReportEnabled() {
+        return Boolean.parseBoolean(PROPS.getProperty(KEY_STARTUP_REPORT, "false"));
+    }
+
+    /**
+     * Check if transformer timings should be measured against their budgets.
+     * @return true if enabled, false by default
+     */
+    public boolean isWatchdogEnabled() {
+        return Boolean.parseBoolean(PROPS.getProperty(KEY_WATCHDOG, "false"));
+    }
+
+    /**
+     * Gets the time a single transformer may spend on a single class.
+     *
+     * @return The budget in milliseconds, 50 by default
+     */
+    public long getWatchdogClassBudgetMillis() {
+        return getLong(KEY_WATCHDOG_CLASS_BUDGET, 50);
+    }
+
+    /**
+     * Gets the time a single transformer may spend in total over the session.
+     *
+     * @return The budget in milliseconds, 2000 by default
+     */
+    public long getWatchdogTransformerBudgetMillis() {
+        return getLong(KEY_WATCHDOG_TRANSFORMER_BUDGET, 2000);
+    }
+
+    /**
+     * Check if transformers exceeding their per-class budget too often should be disabled.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isWatchdogQuarantineEnabled() {
+        return Boolean.parseBoolean(PROPS.getProperty(KEY_WATCHDOG_QUARANTINE, "false"));
+    }
+
+    /**
+     * Gets the number of per-class budget overruns after which a transformer is quarantined.
+     *
+     * @return The number of overruns, 5 by default
+     */
+    public int getWatchdogQuarantineOverruns() {
+        return (int) getLong(KEY_WATCHDOG_QUARANTINE_OVERRUNS, 5);
+    }
+
+    /**
+     * Check if bytes allocated per transformed class should be measured.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isAllocationTrackingEnabled() {
+        return Boolean.parseBoolean(PROPS.getProperty(KEY_ALLOCATION_TRACKING, "false"));
+    }
+
+    /**
+     * Gets how transformed class bytes that are kept after loading are stored.
+     *
+     * @return "heap" (the default), "deflate", "offheap" or "offheap-deflate"
+     */
+    public String getRetainedStorageMode() {
+        return PROPS.getProperty(KEY_RETAINED_STORAGE, "heap").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the build-time pre-transformed bundle to serve classes from.
+     *
+     * @return A path relative to the game directory, empty if no bundle is used
+     */
+    public String getPreTransformedBundle() {
+        return PROPS.getProperty(KEY_PRETRANSFORMED_BUNDLE, "").trim();
+    }
+
+    /**
+     * Check if original and transformed bytes should be dumped per transformer step.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isDumpEnabled() {
+        return Boolean.parseBoolean(PROPS.getProperty(KEY_DUMP, "false"));
+    }
+
+    /**
+     * Gets the directory class dumps are written to.
+     *
+     * @return A path relative to the game directory, "massasm-dump" by default
+     */
+    public String getDumpDirectory() {
+        return PROPS.getProperty(KEY_DUMP_DIR, "massasm-dump").trim();
+    }
+
+    /**
+     * Check if adjacent visitor-based transformers may share a single read/write pass.
+     * @return true if enabled (the default), false otherwise
+     */
+    public boolean isVisitorFusionEnabled() {
+        return Boolean.parseBoolean(PROPS.getProperty(KEY_FUSE_VISITORS, "true"));
+    }
+
+    /**
+     * Check if classes referenced by loaded classes should be read ahead of time on virtual threads.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isPrefetchEnabled() {
+        return Boolean.parseBoolean(PROPS.getProperty(KEY_PREFETCH, "false"));
+    }
+
+    /**
+     * Gets how many prefetch reads may run at the same time.
+     *
+     * @return The number of virtual threads, 4 by default
+     */
+    public int getPrefetchThreads() {
+        return (int) getLong(KEY_PREFETCH_THREADS, 4);
+    }
+
+    /**
+     * Gets how many class names may wait for prefetching before further names are dropped.
+     *
+     * @return The queue size, 512 by default
+     */
+    public int getPrefetchQueueSize() {
+        return (int) getLong(KEY_PREFETCH_QUEUE_SIZE, 512);
+    }
+
+    /**
+     * Gets after how many queued classes the prefetcher stops, as it only pays off during startup.
+     *
+     * @return The number of classes, 20000 by default
+     */
+    public int getPrefetchLimit() {
+        return (int) getLong(KEY_PREFETCH_LIMIT, 20000);
+    }
+
+    /**
+     * Gets after how many seconds since startup the prefetcher stops, as it only pays off during startup.
+     *
+     * @return The number of seconds, 120 by default
+     */
+    public int getPrefetchMaxSeconds() {
+        return (int) getLong(KEY_PREFETCH_MAX_SECONDS, 120);
+    }
+
+    /**
+     * Check if changed methods should be checked against the JIT inlining thresholds.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isJitAnalysisEnabled() {
+        return Boolean.parseBoolean(PROPS.getProperty(KEY_JIT_ANALYSIS, "false"));
+    }
+
+    /**
+     * Gets the bytecode size up to which methods are always inlined, HotSpot's -XX:MaxInlineSize.
+     *
+     * @return The size in bytes, 35 by default
+     */
+    public int getJitMaxInlineSize() {
+        return (int) getLong(KEY_JIT_MAX_INLINE_SIZE, 35);
+    }
+
+    /**
+     * Gets the bytecode size up to which hot methods are inlined, HotSpot's -XX:FreqInlineSize.
+     *
+     * @return The size in bytes, 325 by default
+     */
+    public int getJitFreqInlineSize() {
+        return (int) getLong(KEY_JIT_FREQ_INLINE_SIZE, 325);
+    }
+
+    /**
+     * Gets the bytecode size above which methods are not JIT-compiled.
+     *
+     * @return The size in bytes, 8000 by default
+     */
+    public int getJitHugeMethodLimit() {
+        return (int) getLong(KEY_JIT_HUGE_METHOD_LIMIT, 8000);
+    }
+
+    /**
+     * Check if MassASM may attach itself as an agent when live transformers are first enabled.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isLiveSelfAttachEnabled() {
+        return Boolean.parseBoolean(PROPS.getProperty(KEY_LIVE_SELF_ATTACH, "false"));
+    }
+
+    /**
+     * Gets how many classes are retransformed per call when toggling a live transformer.
+     *
+     * @return The batch size, 100 by default
+     */
+    public int getLiveBatchSize() {
+        return (int) getLong(KEY_LIVE_BATCH_SIZE, 100);
+    }
+
+    /**
+     * Gets what is done with packages that never matched a transformer in earlier launches.
+     *
+     * @return "off" (the default), "suggest" or "apply"
+     */
+    public String getAutoExclusionMode() {
+        return PROPS.getProperty(KEY_AUTO_EXCLUSION, "off").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the number of launches a package must be loaded in without matching to be excluded.
+     *
+     * @return The number of launches, 10 by default
+     */
+    public int getAutoExclusionLaunches() {
+        return (int) getLong(KEY_AUTO_EXCLUSION_LAUNCHES, 10);
+    }
+
+    /**
+     * Gets how often automatically excluded packages are observed again, so a package whose
+     * classes started to match is no longer excluded.
+     *
+     * @return Every how many launches the exclusions are not applied, 10 by default, 0 to never recheck
+     */
+    public int getAutoExclusionRecheck() {
+        return (int) getLong(KEY_AUTO_EXCLUSION_RECHECK, 10);
+    }
+
+    /**
+     * Hashes the configuration values that change what the built-in transformers do to a class.
+     *
+     * @return The lower-case hex SHA-256 of those values
+     */
+    public String getTransformerConfigHash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String key : TRANSFORMER_KEYS) {
+                String value = PROPS.getProperty(key);
+                digest.update((key + "=" + (value == null ? "" : value.trim()) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private long getLong(String key, long defaultValue) {
+        String value = PROPS.getProperty(key);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            MassasmerPreLaunch.LOGGER.error("[MassASM] Invalid number for {}: {}", key, value);
+            return defaultValue;
+        }
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> entries = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            if (!entry.trim().isEmpty()) {
+                entries.add(entry.trim());
+            }
+        }
+        return entries;
+    }
+
     /**
      * Gets the raw exclusion string from the configuration.
      *
@@ -0,0 +1,82 @@
+package de.zonlykroks.massasmer.diagnostics;
+
+import de.zonlykroks.massasmer.config.MassAsmConfigManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the bytes allocated on the class-loading thread while MassASM reads and transforms
+ * a class, reported as allocation per transformed and per untouched class.
+ * Relies on HotSpot's per-thread allocation counters and disables itself if they are unavailable.
+ */
+public class AllocationTracker {
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final boolean enabled;
+
+    private final LongAdder transformedClasses = new LongAdder();
+    private final LongAdder transformedBytes = new LongAdder();
+    private final LongAdder untouchedClasses = new LongAdder();
+    private final LongAdder untouchedBytes = new LongAdder();
+
+    public AllocationTracker(MassAsmConfigManager config) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (config.isAllocationTrackingEnabled()
+                && bean instanceof com.sun.management.ThreadMXBean sunBean
+                && sunBean.isThreadAllocatedMemorySupported()) {
+            sunBean.setThreadAllocatedMemoryEnabled(true);
+            this.threadBean = sunBean;
+            this.enabled = true;
+            StartupReport.registerSection("Allocation per class", this::reportLines);
+        } else {
+            this.threadBean = null;
+            this.enabled = false;
+        }
+    }
+
+    /**
+     * Gets the current allocation counter of the calling thread.
+     *
+     * @return The allocated bytes so far, or 0 if tracking is disabled
+     */
+    public long mark() {
+        return enabled ? threadBean.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Records the allocation since the given mark.
+     *
+     * @param mark        The value returned by {@link #mark()} before the class was processed
+     * @param transformed Whether any transformer changed the class
+     */
+    public void record(long mark, boolean transformed) {
+        if (!enabled) return;
+
+        long current = threadBean.getCurrentThreadAllocatedBytes();
+        // Not measurable on every thread kind, e.g. virtual threads report -1
+        if (mark < 0 || current < 0) return;
+
+        long allocated = current - mark;
+        if (transformed) {
+            transformedClasses.increment();
+            transformedBytes.add(allocated);
+        } else {
+            untouchedClasses.increment();
+            untouchedBytes.add(allocated);
+        }
+    }
+
+    private List<String> reportLines() {
+        return List.of(
+                describe("transformed", transformedClasses.sum(), transformedBytes.sum()),
+                describe("read but untouched", untouchedClasses.sum(), untouchedBytes.sum())
+        );
+    }
+
+    private static String describe(String kind, long classes, long bytes) {
+        return String.format("%s: %d classes, %d bytes allocated, %d bytes per class",
+                kind, classes, bytes, classes == 0 ? 0 : bytes / classes);
+    }
+}
@@ -0,0 +1,153 @@
+package de.zonlykroks.massasmer.diagnostics;
+
+import de.zonlykroks.massasmer.config.MassAsmConfigManager;
+import de.zonlykroks.massasmer.util.ClassFileInspector;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import net.fabricmc.loader.api.FabricLoader;
+import org.apache.logging.log4j.LogManager;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in dump of original and transformed class bytes per transformer step.
+ * <p>
+ * The loading thread only records the byte arrays; writing files and computing the size
+ * summary happens on a single background thread. Each class gets a directory with one
+ * class file per step, and every step is summarized in {@code summary.txt}: class size,
+ * constant pool and per-method bytecode growth, flagging methods that cross the configured
+ * {@code jit-huge-method-limit}, above which HotSpot refuses to JIT-compile a method.
+ */
+public class ClassDumper {
+    private final LoggerWrapper logger;
+    private final boolean enabled;
+    private final int hugeMethodLimit;
+    // A full queue runs the write on the loading thread, so the shared summary needs its own lock
+    private final Object summaryLock = new Object();
+    private final Path directory;
+    private final ThreadPoolExecutor writer;
+
+    public ClassDumper(MassAsmConfigManager config) {
+        this.logger = new LoggerWrapper(LogManager.getLogger("MassASM-Dump"), config.isLogEnabled());
+        this.enabled = config.isDumpEnabled();
+        this.hugeMethodLimit = config.getJitHugeMethodLimit();
+
+        if (enabled) {
+            this.directory = FabricLoader.getInstance().getGameDir().resolve(config.getDumpDirectory());
+            // Bounded so a slow disk throttles the loader instead of piling up class bytes
+            this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(1024),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "MassASM-Dump-Writer");
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "MassASM-Dump-Flush"));
+            logger.info("Dumping transformed classes to {}", directory);
+        } else {
+            this.directory = null;
+            this.writer = null;
+        }
+    }
+
+    /**
+     * Check if dumping is enabled.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Hands a finished trace to the background writer.
+     *
+     * @param trace The trace to write
+     */
+    public void submit(TransformTrace trace) {
+        if (!enabled) return;
+        writer.execute(() -> write(trace));
+    }
+
+    private void flush() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(TransformTrace trace) {
+        try {
+            Path classDirectory = directory.resolve(trace.className().replace('.', '/'));
+            Files.createDirectories(classDirectory);
+
+            List<String> summary = new ArrayList<>();
+            summary.add(trace.className());
+            Files.write(classDirectory.resolve("00-original.class"), trace.originalBytes());
+
+            for (int i = 0; i < trace.steps().size(); i++) {
+                TransformTrace.Step step = trace.steps().get(i);
+                Files.write(classDirectory.resolve(String.format("%02d-%s.class", i + 1, sanitize(step.transformer()))), step.bytes());
+                summarizeStep(summary, step.transformer(), trace.inputOf(i), step.bytes());
+            }
+
+            Files.write(classDirectory.resolve("summary.txt"), summary, StandardCharsets.UTF_8);
+            synchronized (summaryLock) {
+                try (Writer out = Files.newBufferedWriter(directory.resolve("summary.txt"), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (String line : summary) {
+                        out.write(line);
+                        out.write(System.lineSeparator());
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to dump {}: {}", trace.className(), e.toString());
+        }
+    }
+
+    private void summarizeStep(List<String> summary, String transformer, byte[] before, byte[] after) {
+        ClassFileInspector beforeClass = ClassFileInspector.of(before);
+        ClassFileInspector afterClass = ClassFileInspector.of(after);
+
+        summary.add(String.format("  [%s] size %d -> %d (%+d), constant pool %d -> %d (%+d)",
+                transformer,
+                before.length, after.length, after.length - before.length,
+                beforeClass.constantPoolCount(), afterClass.constantPoolCount(),
+                afterClass.constantPoolCount() - beforeClass.constantPoolCount()));
+
+        Map<String, Integer> beforeSizes = new HashMap<>();
+        for (ClassFileInspector.Member method : beforeClass.methods()) {
+            beforeSizes.put(method.key(), method.codeLength());
+        }
+
+        for (ClassFileInspector.Member method : afterClass.methods()) {
+            int oldSize = beforeSizes.getOrDefault(method.key(), -1);
+            int newSize = method.codeLength();
+            if (oldSize == newSize) continue;
+
+            String flag = newSize > hugeMethodLimit && oldSize <= hugeMethodLimit
+                    ? "  HUGE: will no longer be JIT-compiled"
+                    : "";
+            summary.add(String.format("    %s code %s -> %d%s",
+                    method.key(), oldSize < 0 ? "new" : Integer.toString(oldSize), newSize, flag));
+        }
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
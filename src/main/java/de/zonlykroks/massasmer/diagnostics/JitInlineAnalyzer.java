@@ -0,0 +1,117 @@
+package de.zonlykroks.massasmer.diagnostics;
+
+import de.zonlykroks.massasmer.config.MassAsmConfigManager;
+import de.zonlykroks.massasmer.util.ClassFileInspector;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import org.apache.logging.log4j.LogManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares the bytecode size of every method a transformer changed against HotSpot's inlining
+ * thresholds, and reports per transformer which methods lost inlinability:
+ * <ul>
+ *     <li>{@code MaxInlineSize}: methods up to this size are inlined even when not hot</li>
+ *     <li>{@code FreqInlineSize}: hot methods up to this size are inlined</li>
+ *     <li>the huge-method limit: larger methods are not JIT-compiled at all</li>
+ * </ul>
+ * Thresholds are configurable, as they depend on the JVM flags the game runs with.
+ */
+public class JitInlineAnalyzer {
+    private static final int MAX_REPORTED_PER_TRANSFORMER = 20;
+
+    private final LoggerWrapper logger;
+    private final boolean enabled;
+    private final List<Threshold> thresholds;
+
+    private final Map<String, List<String>> findings = new ConcurrentHashMap<>();
+
+    public JitInlineAnalyzer(MassAsmConfigManager config) {
+        this.logger = new LoggerWrapper(LogManager.getLogger("MassASM-JitAnalysis"), config.isLogEnabled());
+        this.enabled = config.isJitAnalysisEnabled();
+        this.thresholds = List.of(
+                new Threshold("MaxInlineSize", config.getJitMaxInlineSize(), "no longer trivially inlined"),
+                new Threshold("FreqInlineSize", config.getJitFreqInlineSize(), "no longer inlined when hot"),
+                new Threshold("huge method limit", config.getJitHugeMethodLimit(), "no longer JIT-compiled")
+        );
+
+        if (enabled) {
+            StartupReport.registerSection("JIT inlining impact", this::reportLines);
+        }
+    }
+
+    /**
+     * Check if the analysis runs at all.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Analyzes every step of a finished transformation.
+     *
+     * @param trace The recorded transformation steps
+     */
+    public void analyze(TransformTrace trace) {
+        if (!enabled) return;
+
+        for (int i = 0; i < trace.steps().size(); i++) {
+            TransformTrace.Step step = trace.steps().get(i);
+            try {
+                analyzeStep(trace.className(), step.transformer(), trace.inputOf(i), step.bytes());
+            } catch (RuntimeException e) {
+                logger.warn("Could not analyze {} after '{}': {}", trace.className(), step.transformer(), e.toString());
+            }
+        }
+    }
+
+    private void analyzeStep(String className, String transformer, byte[] before, byte[] after) {
+        Map<String, Integer> beforeSizes = new HashMap<>();
+        for (ClassFileInspector.Member method : ClassFileInspector.of(before).methods()) {
+            beforeSizes.put(method.key(), method.codeLength());
+        }
+
+        for (ClassFileInspector.Member method : ClassFileInspector.of(after).methods()) {
+            Integer oldSize = beforeSizes.get(method.key());
+            int newSize = method.codeLength();
+            // Added methods had no inlinability to lose
+            if (oldSize == null || oldSize < 0 || newSize <= oldSize) continue;
+
+            for (Threshold threshold : thresholds) {
+                if (oldSize <= threshold.limit() && newSize > threshold.limit()) {
+                    String finding = String.format("%s.%s: %d -> %d bytes (+%d), crossed %s (%d), %s",
+                            className, method.key(), oldSize, newSize, newSize - oldSize,
+                            threshold.name(), threshold.limit(), threshold.effect());
+                    List<String> transformerFindings = findings.computeIfAbsent(transformer, k -> new ArrayList<>());
+                    synchronized (transformerFindings) {
+                        transformerFindings.add(finding);
+                    }
+                    logger.warn("Transformer '{}': {}", transformer, finding);
+                }
+            }
+        }
+    }
+
+    private List<String> reportLines() {
+        List<String> lines = new ArrayList<>();
+        findings.forEach((transformer, transformerFindings) -> {
+            synchronized (transformerFindings) {
+                lines.add(transformer + ": " + transformerFindings.size() + " method(s) lost inlinability");
+                transformerFindings.stream()
+                        .limit(MAX_REPORTED_PER_TRANSFORMER)
+                        .forEach(finding -> lines.add("    " + finding));
+                if (transformerFindings.size() > MAX_REPORTED_PER_TRANSFORMER) {
+                    lines.add("    ... " + (transformerFindings.size() - MAX_REPORTED_PER_TRANSFORMER) + " more");
+                }
+            }
+        });
+        return lines;
+    }
+
+    private record Threshold(String name, int limit, String effect) {}
+}
@@ -0,0 +1,101 @@
+package de.zonlykroks.massasmer.diagnostics;
+
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Collects diagnostics from the different MassASM subsystems and writes them to a single
+ * report file once the game shuts down.
+ * <p>
+ * Subsystems either register a section that is rendered lazily when the report is written,
+ * or record decisions (like disabling a transformer) as they happen.
+ */
+public final class StartupReport {
+    private static final Map<String, Supplier<List<String>>> SECTIONS = new LinkedHashMap<>();
+    private static final List<String> DECISIONS = new ArrayList<>();
+
+    private static boolean hookInstalled = false;
+
+    private StartupReport() {}
+
+    /**
+     * Registers a report section. Registering the same title again replaces the section.
+     *
+     * @param title The section title
+     * @param lines Supplies the section lines when the report is rendered
+     */
+    public static synchronized void registerSection(String title, Supplier<List<String>> lines) {
+        SECTIONS.put(title, lines);
+    }
+
+    /**
+     * Records a decision MassASM took at runtime, for example quarantining a transformer.
+     *
+     * @param decision A human-readable description of the decision
+     */
+    public static synchronized void recordDecision(String decision) {
+        DECISIONS.add(decision);
+    }
+
+    /**
+     * Renders the report.
+     *
+     * @return The report lines
+     */
+    public static synchronized List<String> render() {
+        List<String> lines = new ArrayList<>();
+        lines.add("MassASM startup report");
+        lines.add("");
+
+        lines.add("== Decisions ==");
+        if (DECISIONS.isEmpty()) {
+            lines.add("  (none)");
+        } else {
+            DECISIONS.forEach(decision -> lines.add("  " + decision));
+        }
+
+        for (Map.Entry<String, Supplier<List<String>>> section : SECTIONS.entrySet()) {
+            lines.add("");
+            lines.add("== " + section.getKey() + " ==");
+            List<String> sectionLines = section.getValue().get();
+            if (sectionLines.isEmpty()) {
+                lines.add("  (none)");
+            } else {
+                sectionLines.forEach(line -> lines.add("  " + line));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the report to the given file.
+     *
+     * @param file The file to write to, replaced if it exists
+     */
+    public static void write(Path file) {
+        try {
+            Files.write(file, render());
+        } catch (IOException e) {
+            MassasmerPreLaunch.LOGGER.error("[MassASM] Failed to write startup report: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the report to the given file when the JVM shuts down. Only the first call has an effect.
+     *
+     * @param file The file to write to
+     */
+    public static synchronized void writeOnShutdown(Path file) {
+        if (hookInstalled) return;
+        hookInstalled = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> write(file), "MassASM-StartupReport"));
+    }
+}
@@ -0,0 +1,60 @@
+package de.zonlykroks.massasmer.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The bytes of a class before transformation and after every transformer step that changed it.
+ * Recorded by the loading thread only while a diagnostic needs per-step output.
+ */
+public final class TransformTrace {
+    private final String className;
+    private final byte[] originalBytes;
+    private final List<Step> steps = new ArrayList<>();
+
+    public TransformTrace(String className, byte[] originalBytes) {
+        this.className = className;
+        this.originalBytes = originalBytes;
+    }
+
+    /**
+     * Records the output of a transformer that changed the class.
+     *
+     * @param transformer The transformer name
+     * @param bytes       The bytes it produced
+     */
+    public void step(String transformer, byte[] bytes) {
+        steps.add(new Step(transformer, bytes));
+    }
+
+    public String className() {
+        return className;
+    }
+
+    public byte[] originalBytes() {
+        return originalBytes;
+    }
+
+    public List<Step> steps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Gets the bytes a step started from.
+     *
+     * @param index The step index
+     * @return The original bytes for the first step, the previous step's output otherwise
+     */
+    public byte[] inputOf(int index) {
+        return index == 0 ? originalBytes : steps.get(index - 1).bytes();
+    }
+
+    /**
+     * A single transformer step.
+     *
+     * @param transformer The transformer name
+     * @param bytes       The bytes it produced
+     */
+    public record Step(String transformer, byte[] bytes) {}
+}
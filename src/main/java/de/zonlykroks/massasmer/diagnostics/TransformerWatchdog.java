@@ -0,0 +1,161 @@
+package de.zonlykroks.massasmer.diagnostics;
+
+import de.zonlykroks.massasmer.config.MassAsmConfigManager;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import org.apache.logging.log4j.LogManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long each transformer spends per class and in total, warns when a
+ * transformer exceeds its budget and optionally quarantines transformers that keep overrunning,
+ * which disables them for the rest of the session.
+ */
+public class TransformerWatchdog {
+    private static final int SLOWEST_TRACKED = 5;
+
+    private final LoggerWrapper logger;
+    private final boolean enabled;
+    private final long classBudgetNanos;
+    private final long transformerBudgetNanos;
+    private final boolean quarantineEnabled;
+    private final int quarantineOverruns;
+
+    private final Map<String, TransformerStats> stats = new ConcurrentHashMap<>();
+
+    public TransformerWatchdog(MassAsmConfigManager config) {
+        this.logger = new LoggerWrapper(LogManager.getLogger("MassASM-Watchdog"), config.isLogEnabled());
+        this.enabled = config.isWatchdogEnabled();
+        this.classBudgetNanos = TimeUnit.MILLISECONDS.toNanos(config.getWatchdogClassBudgetMillis());
+        this.transformerBudgetNanos = TimeUnit.MILLISECONDS.toNanos(config.getWatchdogTransformerBudgetMillis());
+        this.quarantineEnabled = config.isWatchdogQuarantineEnabled();
+        this.quarantineOverruns = Math.max(1, config.getWatchdogQuarantineOverruns());
+
+        if (enabled) {
+            StartupReport.registerSection("Transformer timings", this::reportLines);
+        }
+    }
+
+    /**
+     * Check if timings are measured at all.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Check if a transformer has been disabled for the rest of the session.
+     *
+     * @param transformerName The transformer name
+     * @return true if the transformer must not run anymore
+     */
+    public boolean isQuarantined(String transformerName) {
+        TransformerStats transformerStats = stats.get(transformerName);
+        return transformerStats != null && transformerStats.quarantined;
+    }
+
+    /**
+     * Records a single transformer invocation and checks it against the budgets.
+     *
+     * @param transformerName The transformer that ran
+     * @param className       The class it transformed
+     * @param nanos           The time it took
+     */
+    public void record(String transformerName, String className, long nanos) {
+        if (!enabled) return;
+
+        TransformerStats transformerStats = stats.computeIfAbsent(transformerName, TransformerStats::new);
+        synchronized (transformerStats) {
+            transformerStats.invocations++;
+            transformerStats.totalNanos += nanos;
+            transformerStats.trackSlowest(className, nanos);
+
+            if (classBudgetNanos > 0 && nanos > classBudgetNanos) {
+                transformerStats.overruns++;
+                logger.warn("Transformer '{}' took {} ms on {} (budget {} ms), slowest classes: {}",
+                        transformerName, millis(nanos), className, millis(classBudgetNanos), transformerStats.describeSlowest());
+
+                if (quarantineEnabled && !transformerStats.quarantined && transformerStats.overruns >= quarantineOverruns) {
+                    quarantine(transformerStats, transformerStats.overruns + " class budget overruns");
+                }
+            }
+
+            if (transformerBudgetNanos > 0 && !transformerStats.totalBudgetExceeded && transformerStats.totalNanos > transformerBudgetNanos) {
+                transformerStats.totalBudgetExceeded = true;
+                logger.warn("Transformer '{}' exceeded its total budget of {} ms after {} classes, slowest classes: {}",
+                        transformerName, millis(transformerBudgetNanos), transformerStats.invocations, transformerStats.describeSlowest());
+            }
+        }
+    }
+
+    private void quarantine(TransformerStats transformerStats, String reason) {
+        transformerStats.quarantined = true;
+        logger.error("Quarantining transformer '{}' for the rest of the session: {}", transformerStats.name, reason);
+        StartupReport.recordDecision("Quarantined transformer '" + transformerStats.name + "' after " + reason
+                + ", slowest classes: " + transformerStats.describeSlowest());
+    }
+
+    private List<String> reportLines() {
+        List<TransformerStats> sorted = new ArrayList<>(stats.values());
+        sorted.sort(Comparator.comparingLong((TransformerStats s) -> s.totalNanos).reversed());
+
+        List<String> lines = new ArrayList<>();
+        for (TransformerStats transformerStats : sorted) {
+            synchronized (transformerStats) {
+                lines.add(String.format("%s: %d classes, %d ms total, %d budget overruns%s",
+                        transformerStats.name,
+                        transformerStats.invocations,
+                        millis(transformerStats.totalNanos),
+                        transformerStats.overruns,
+                        transformerStats.quarantined ? ", QUARANTINED" : ""));
+                lines.add("    slowest: " + transformerStats.describeSlowest());
+            }
+        }
+        return lines;
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static final class TransformerStats {
+        private final String name;
+        private final List<ClassTiming> slowest = new ArrayList<>(SLOWEST_TRACKED + 1);
+        private long invocations;
+        private long totalNanos;
+        private int overruns;
+        private boolean totalBudgetExceeded;
+        private volatile boolean quarantined;
+
+        private TransformerStats(String name) {
+            this.name = name;
+        }
+
+        private void trackSlowest(String className, long nanos) {
+            if (slowest.size() == SLOWEST_TRACKED && slowest.get(SLOWEST_TRACKED - 1).nanos >= nanos) return;
+
+            slowest.add(new ClassTiming(className, nanos));
+            slowest.sort(Comparator.comparingLong(ClassTiming::nanos).reversed());
+            if (slowest.size() > SLOWEST_TRACKED) {
+                slowest.remove(SLOWEST_TRACKED);
+            }
+        }
+
+        private String describeSlowest() {
+            StringBuilder builder = new StringBuilder();
+            for (ClassTiming timing : slowest) {
+                if (!builder.isEmpty()) builder.append(", ");
+                builder.append(timing.className).append(" (").append(millis(timing.nanos)).append(" ms)");
+            }
+            return builder.toString();
+        }
+    }
+
+    private record ClassTiming(String className, long nanos) {}
+}
@@ -0,0 +1,261 @@
+package de.zonlykroks.massasmer.exclusion;
+
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.diagnostics.StartupReport;
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Records, across launches, which packages had classes matched by any registered transformer,
+ * and derives an extended exclusion list of packages that never matched.
+ * <p>
+ * The profile is stored in the game directory together with a fingerprint of the registered
+ * transformers, the loaded mods and the configured exclusions. Whenever the fingerprint changes,
+ * the recorded statistics are discarded and profiling starts over. A package becomes a candidate
+ * once it was loaded in the configured number of launches without a single class matching, unless
+ * a transformer targets a class name or name prefix in it.
+ * Depending on the mode, candidates are only suggested in the startup report, or excluded from
+ * transformation right away, before any class bytes are read or filters evaluated. Every few
+ * launches the exclusions are not applied, so excluded packages are observed again and drop out
+ * once one of their classes matches.
+ */
+public final class AutoExclusions {
+    private static final String FINGERPRINT_KEY = "@fingerprint";
+    private static final String LAUNCHES_KEY = "@launches";
+    private static final String MATCHED = "matched";
+    private static final int REPORTED_CANDIDATES = 100;
+
+    private static volatile boolean recording = false;
+    private static volatile Set<String> excluded = Set.of();
+
+    // Packages loaded in this launch, mapped to whether any of their classes matched
+    private static final Map<String, Boolean> LAUNCH = new ConcurrentHashMap<>();
+    // Launches each package was loaded in without matching, or -1 once it matched
+    private static final Map<String, Integer> PROFILE = new HashMap<>();
+
+    private static Mode mode = Mode.OFF;
+    private static String fingerprint;
+    private static int launches;
+    private static List<String> candidates = List.of();
+    private static boolean rechecking = false;
+
+    private AutoExclusions() {}
+
+    /**
+     * What is done with packages that never matched.
+     */
+    public enum Mode {
+        /** Nothing is recorded. */
+        OFF,
+        /** Candidates are listed in the startup report. */
+        SUGGEST,
+        /** Candidates are listed and excluded from transformation. */
+        APPLY;
+
+        /**
+         * Parses a mode as written in {@code massasm.properties}.
+         *
+         * @param value "off", "suggest" or "apply"
+         * @return The mode, {@link #OFF} for unknown values
+         */
+        public static Mode parse(String value) {
+            return switch (value) {
+                case "off" -> OFF;
+                case "suggest" -> SUGGEST;
+                case "apply" -> APPLY;
+                default -> {
+                    // A typo must not silently start excluding packages
+                    MassasmerPreLaunch.LOGGER.error("[MassASM] Unknown auto-exclusion mode '{}', expected off, suggest or apply; not recording packages", value);
+                    yield OFF;
+                }
+            };
+        }
+    }
+
+    /**
+     * Loads the profile and starts recording. Called once the transformer registry is frozen.
+     *
+     * @param file             The profile file
+     * @param transformerNames The names of all registered transformers, in registration order
+     * @param exclusions       The configured exclusions
+     * @param mode             The mode
+     * @param threshold        The number of launches a package must be loaded in without matching to be a candidate
+     * @param recheckInterval  Every how many launches excluded packages are observed again, 0 to never
+     * @param targeted         Checks if a transformer targets a class name or name prefix in a package
+     */
+    public static synchronized void start(Path file, List<String> transformerNames, String exclusions, Mode mode,
+                                          int threshold, int recheckInterval, Predicate<String> targeted) {
+        if (mode == Mode.OFF || recording) return;
+
+        AutoExclusions.mode = mode;
+        fingerprint = fingerprint(transformerNames, exclusions);
+        load(file);
+
+        List<String> found = new ArrayList<>();
+        PROFILE.forEach((pkg, count) -> {
+            if (count >= threshold && !targeted.test(pkg)) found.add(pkg);
+        });
+        Collections.sort(found);
+        candidates = List.copyOf(found);
+
+        // This launch is launches + 1, counted from one
+        rechecking = recheckInterval > 0 && (launches + 1) % recheckInterval == 0;
+        if (mode == Mode.APPLY && !candidates.isEmpty() && rechecking) {
+            StartupReport.recordDecision("Observing " + candidates.size() + " automatically excluded packages again in this launch");
+        } else if (mode == Mode.APPLY && !candidates.isEmpty()) {
+            excluded = Set.copyOf(candidates);
+            StartupReport.recordDecision("Excluded " + candidates.size() + " packages that matched no transformer in "
+                    + threshold + " launches");
+        }
+
+        StartupReport.registerSection("Automatic exclusions", AutoExclusions::reportLines);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> save(file), "MassASM-AutoExclusions"));
+        recording = true;
+    }
+
+    /**
+     * Checks if recording, so callers can skip computing whether a class matched.
+     *
+     * @return true once started in a mode other than {@link Mode#OFF}
+     */
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Records whether a class loaded in this launch matched any transformer.
+     *
+     * @param className The fully qualified class name
+     * @param matched   Whether any registered transformer's filter matched the class
+     */
+    public static void record(String className, boolean matched) {
+        if (!recording) return;
+
+        String pkg = packageOf(className);
+        if (matched) {
+            LAUNCH.put(pkg, Boolean.TRUE);
+        } else {
+            LAUNCH.putIfAbsent(pkg, Boolean.FALSE);
+        }
+    }
+
+    /**
+     * Checks if a class is in an automatically excluded package.
+     *
+     * @param className The fully qualified class name
+     * @return true if the class should not be transformed
+     */
+    public static boolean isExcluded(String className) {
+        Set<String> current = excluded;
+        return !current.isEmpty() && current.contains(packageOf(className));
+    }
+
+    private static String packageOf(String className) {
+        int dot = className.lastIndexOf('.');
+        return dot < 0 ? "" : className.substring(0, dot);
+    }
+
+    private static String fingerprint(List<String> transformerNames, String exclusions) {
+        List<String> mods = new ArrayList<>();
+        for (ModContainer mod : FabricLoader.getInstance().getAllMods()) {
+            mods.add(mod.getMetadata().getId() + "@" + mod.getMetadata().getVersion().getFriendlyString());
+        }
+        Collections.sort(mods);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.join(",", transformerNames).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(String.join(",", mods).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(exclusions.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void load(Path file) {
+        if (!Files.isRegularFile(file)) return;
+
+        Properties props = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            props.load(is);
+        } catch (IOException e) {
+            MassasmerPreLaunch.LOGGER.error("[MassASM] Failed to load package profile {}: {}", file, e.getMessage());
+            return;
+        }
+
+        if (!fingerprint.equals(props.getProperty(FINGERPRINT_KEY))) {
+            StartupReport.recordDecision("Discarded the package match profile, the transformers, mods or exclusions changed");
+            return;
+        }
+
+        launches = parseCount(props.getProperty(LAUNCHES_KEY));
+        for (String pkg : props.stringPropertyNames()) {
+            if (pkg.startsWith("@")) continue;
+            String value = props.getProperty(pkg);
+            PROFILE.put(pkg, value.equals(MATCHED) ? -1 : parseCount(value));
+        }
+    }
+
+    private static int parseCount(String value) {
+        try {
+            return value == null ? 0 : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static synchronized void save(Path file) {
+        // Excluded packages are not observed, and keep the count that excluded them until the next recheck
+        LAUNCH.forEach((pkg, matched) -> {
+            int previous = PROFILE.getOrDefault(pkg, 0);
+            PROFILE.put(pkg, matched || previous < 0 ? -1 : previous + 1);
+        });
+
+        Properties props = new Properties();
+        props.setProperty(FINGERPRINT_KEY, fingerprint);
+        props.setProperty(LAUNCHES_KEY, Integer.toString(launches + 1));
+        PROFILE.forEach((pkg, count) -> props.setProperty(pkg, count < 0 ? MATCHED : Integer.toString(count)));
+
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream os = Files.newOutputStream(temp)) {
+                props.store(os, "MassASM package match profile");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            MassasmerPreLaunch.LOGGER.error("[MassASM] Failed to save package profile {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static List<String> reportLines() {
+        List<String> lines = new ArrayList<>();
+        long matched = LAUNCH.values().stream().filter(Boolean::booleanValue).count();
+        lines.add("Mode: " + mode.name().toLowerCase(Locale.ROOT) + ", " + launches + " earlier launches profiled");
+        lines.add("Packages loaded in this launch: " + LAUNCH.size() + ", with matching classes: " + matched);
+        lines.add((mode == Mode.APPLY && !rechecking ? "Excluded" : "Suggested") + " packages: " + candidates.size()
+                + (mode == Mode.APPLY && rechecking ? ", observed again in this launch" : ""));
+        for (int i = 0; i < candidates.size() && i < REPORTED_CANDIDATES; i++) {
+            lines.add("  " + (candidates.get(i).isEmpty() ? "(default package)" : candidates.get(i)));
+        }
+        if (candidates.size() > REPORTED_CANDIDATES) {
+            lines.add("  ... and " + (candidates.size() - REPORTED_CANDIDATES) + " more");
+        }
+        return lines;
+    }
+}
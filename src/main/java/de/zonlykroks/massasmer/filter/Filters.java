@@ -70,6 +70,29 @@ public final class Filters {
         return NamePatternFilter.contains(substring);
     }
 
+    /**
+     * Creates a filter for a class named in a specific mapping namespace. The name is translated
+     * to the runtime namespace once, so the same filter works in development and production.
+     *
+     * @param namespace The mapping namespace the name is written in, e.g. {@code intermediary}
+     * @param className The class name in that namespace
+     * @return A filter matching the translated class name exactly
+     */
+    public static TransformerFilter mappedExact(String namespace, String className) {
+        return MappedNameFilter.exact(namespace, className);
+    }
+
+    /**
+     * Creates a filter for a class named in a specific mapping namespace and all of its nested classes.
+     *
+     * @param namespace The mapping namespace the name is written in, e.g. {@code intermediary}
+     * @param className The outer class name in that namespace
+     * @return A filter matching the translated class and its nested classes
+     */
+    public static TransformerFilter mappedWithNested(String namespace, String className) {
+        return MappedNameFilter.withNested(namespace, className);
+    }
+
     /**
      * Creates a filter that matches class names using a regular expression.
      *
@@ -155,6 +178,56 @@ public final class Filters {
         return SuperclassFilter.doesNotExtend(superClass);
     }
 
+    /**
+     * Creates a filter that matches classes loaded from the game jar.
+     *
+     * @return A filter that matches game classes
+     */
+    public static TransformerFilter fromGame() {
+        return CodeSourceFilter.game();
+    }
+
+    /**
+     * Creates a filter that matches classes loaded from the jar of a specific mod.
+     *
+     * @param modId The mod ID
+     * @return A filter that matches classes of the given mod
+     */
+    public static TransformerFilter fromMod(String modId) {
+        return CodeSourceFilter.mod(modId);
+    }
+
+    /**
+     * Creates a filter that matches classes loaded from classpath libraries that are not mods.
+     *
+     * @return A filter that matches library classes
+     */
+    public static TransformerFilter fromLibrary() {
+        return CodeSourceFilter.library();
+    }
+
+    /**
+     * Caches the results of a filter per class name, so it is evaluated once per class. Worth it for
+     * hierarchy, annotation, regex and composite filters, not for plain name filters.
+     *
+     * @param filter The filter to memoize
+     * @return A filter with the same results, backed by a bounded result table
+     */
+    public static TransformerFilter memoize(TransformerFilter filter) {
+        return MemoizingFilter.of(filter);
+    }
+
+    /**
+     * Caches the results of a filter per class name in a table of the given capacity.
+     *
+     * @param filter   The filter to memoize
+     * @param capacity The number of results kept, rounded up to a power of two
+     * @return A filter with the same results, backed by a bounded result table
+     */
+    public static TransformerFilter memoize(TransformerFilter filter, int capacity) {
+        return MemoizingFilter.of(filter, capacity);
+    }
+
     /**
      * Combines two filters with logical AND.
      *
@@ -0,0 +1,76 @@
+package de.zonlykroks.massasmer.filter.impl;
+
+import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import de.zonlykroks.massasmer.util.CodeSourceIndex;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Objects;
+
+/**
+ * Filter that matches classes based on the jar they are loaded from rather than their name,
+ * so mods sharing a package can still be told apart. Lookups go through the {@link CodeSourceIndex}.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class CodeSourceFilter implements TransformerFilter {
+    private final CodeSourceIndex.Kind kind;
+    private final String modId;
+
+    /**
+     * Creates a filter that matches classes from the game jar.
+     *
+     * @return A new filter that matches game classes
+     */
+    public static CodeSourceFilter game() {
+        return create(CodeSourceIndex.Kind.GAME, null);
+    }
+
+    /**
+     * Creates a filter that matches classes from the jar of a specific mod.
+     *
+     * @param modId The mod ID
+     * @return A new filter that matches classes of the given mod
+     */
+    public static CodeSourceFilter mod(String modId) {
+        return create(CodeSourceIndex.Kind.MOD, Objects.requireNonNull(modId, "modId"));
+    }
+
+    /**
+     * Creates a filter that matches classes from classpath libraries that are not mods.
+     *
+     * @return A new filter that matches library classes
+     */
+    public static CodeSourceFilter library() {
+        return create(CodeSourceIndex.Kind.LIBRARY, null);
+    }
+
+    private static CodeSourceFilter create(CodeSourceIndex.Kind kind, String modId) {
+        CodeSourceIndex.request();
+        return new CodeSourceFilter(kind, modId);
+    }
+
+    @Override
+    public boolean matches(String className) {
+        if (className == null) {
+            return false;
+        }
+
+        CodeSourceIndex.CodeSource source = CodeSourceIndex.sourceOf(className);
+        return source.kind() == kind && (modId == null || modId.equals(source.modId()));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CodeSourceFilter that = (CodeSourceFilter) o;
+        return kind == that.kind && Objects.equals(modId, that.modId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, modId);
+    }
+}
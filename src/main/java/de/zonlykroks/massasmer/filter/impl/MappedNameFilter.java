@@ -0,0 +1,106 @@
+package de.zonlykroks.massasmer.filter.impl;
+
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.util.Objects;
+
+/**
+ * Filter that matches a class named in a specific mapping namespace, e.g. {@code intermediary},
+ * regardless of the namespace the game runs in.
+ * <p>
+ * The name is translated to the runtime namespace once, through Fabric's {@code MappingResolver},
+ * and cached. Transformers registered with this filter are indexed by their translated name when
+ * the registry is frozen, so no mapping lookups happen per class.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class MappedNameFilter implements TransformerFilter {
+    private final String namespace;
+    private final String className;
+    private final boolean includeNested;
+
+    @Getter(AccessLevel.NONE)
+    private volatile String runtimeName;
+
+    /**
+     * Creates a filter that matches a single class named in the given namespace.
+     *
+     * @param namespace The mapping namespace the name is written in, e.g. {@code intermediary}
+     * @param className The fully qualified class name in that namespace
+     * @return A new filter matching the translated class name exactly
+     */
+    public static MappedNameFilter exact(String namespace, String className) {
+        return new MappedNameFilter(Objects.requireNonNull(namespace, "namespace"), Objects.requireNonNull(className, "className"), false);
+    }
+
+    /**
+     * Creates a filter that matches a class named in the given namespace and all of its nested classes.
+     *
+     * @param namespace The mapping namespace the name is written in, e.g. {@code intermediary}
+     * @param className The fully qualified outer class name in that namespace
+     * @return A new filter matching the translated class and its nested classes
+     */
+    public static MappedNameFilter withNested(String namespace, String className) {
+        return new MappedNameFilter(Objects.requireNonNull(namespace, "namespace"), Objects.requireNonNull(className, "className"), true);
+    }
+
+    /**
+     * Gets the class name translated into the runtime namespace.
+     *
+     * @return The runtime class name, or the original name if it cannot be translated
+     */
+    public String getRuntimeName() {
+        String name = runtimeName;
+        if (name == null) {
+            name = translate();
+            runtimeName = name;
+        }
+        return name;
+    }
+
+    private String translate() {
+        try {
+            return FabricLoader.getInstance().getMappingResolver().mapClassName(namespace, className);
+        } catch (RuntimeException e) {
+            // Without a running loader (e.g. offline pre-transformation) names are used as written
+            MassasmerPreLaunch.LOGGER.warn("Could not map {} from namespace '{}', using it unmapped: {}", className, namespace, e.toString());
+            return className;
+        }
+    }
+
+    @Override
+    public boolean matches(String className) {
+        if (className == null) {
+            return false;
+        }
+
+        String name = getRuntimeName();
+        if (className.equals(name)) {
+            return true;
+        }
+        return includeNested
+                && className.length() > name.length()
+                && className.charAt(name.length()) == '$'
+                && className.startsWith(name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MappedNameFilter that = (MappedNameFilter) o;
+        return includeNested == that.includeNested &&
+                Objects.equals(namespace, that.namespace) &&
+                Objects.equals(className, that.className);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(namespace, className, includeNested);
+    }
+}
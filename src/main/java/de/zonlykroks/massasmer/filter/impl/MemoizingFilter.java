@@ -0,0 +1,73 @@
+package de.zonlykroks.massasmer.filter.impl;
+
+import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import lombok.Getter;
+
+/**
+ * Caches the results of an expensive filter per class name, so hierarchy, annotation and regex
+ * checks run once per class even when the filter is shared by several transformers or composites.
+ * <p>
+ * Results live in a fixed-size, direct-mapped table indexed by the class name's hash: a colliding
+ * name simply replaces the previous entry, which keeps memory bounded and lookups lock-free.
+ * Entries are immutable, so concurrent readers see either a complete entry or none.
+ */
+public class MemoizingFilter implements TransformerFilter {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    @Getter
+    private final TransformerFilter delegate;
+    private final Entry[] table;
+    private final int mask;
+
+    private MemoizingFilter(TransformerFilter delegate, int capacity) {
+        this.delegate = delegate;
+        int size = capacity <= 16 ? 16 : Integer.highestOneBit(capacity - 1) << 1;
+        this.table = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Wraps a filter with a result table of the default capacity.
+     *
+     * @param delegate The filter to memoize
+     * @return The memoizing filter, or the filter itself if it is already memoized
+     */
+    public static TransformerFilter of(TransformerFilter delegate) {
+        return of(delegate, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Wraps a filter with a result table of the given capacity.
+     *
+     * @param delegate The filter to memoize
+     * @param capacity The number of results kept, rounded up to a power of two
+     * @return The memoizing filter, or the filter itself if it is already memoized
+     */
+    public static TransformerFilter of(TransformerFilter delegate, int capacity) {
+        if (delegate instanceof MemoizingFilter) {
+            return delegate;
+        }
+        return new MemoizingFilter(delegate, capacity);
+    }
+
+    @Override
+    public boolean matches(String className) {
+        if (className == null) {
+            return false;
+        }
+
+        int hash = className.hashCode();
+        int index = (hash ^ (hash >>> 16)) & mask;
+
+        Entry entry = table[index];
+        if (entry != null && entry.className().equals(className)) {
+            return entry.matches();
+        }
+
+        boolean matches = delegate.matches(className);
+        table[index] = new Entry(className, matches);
+        return matches;
+    }
+
+    private record Entry(String className, boolean matches) {}
+}
@@ -0,0 +1,105 @@
+package de.zonlykroks.massasmer.live;
+
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Agent entry points giving MassASM access to {@link Instrumentation} for live retransformation.
+ * <p>
+ * The mod jar declares this class as {@code Premain-Class} and {@code Agent-Class}, so it can be
+ * passed as {@code -javaagent:massasmer.jar} or attached to the running JVM. Agents are loaded by
+ * the system class loader, while the rest of MassASM is loaded by the game's class loader, so the
+ * instance is looked up on the system class loader's copy of this class.
+ */
+public final class LiveTransformerAgent {
+    private static volatile Instrumentation instrumentation;
+
+    private LiveTransformerAgent() {}
+
+    public static void premain(String args, Instrumentation inst) {
+        instrumentation = inst;
+    }
+
+    public static void agentmain(String args, Instrumentation inst) {
+        instrumentation = inst;
+    }
+
+    /**
+     * Gets the instrumentation instance, attaching to the running JVM first if allowed.
+     *
+     * @param selfAttach Whether to attach the mod jar as an agent if no agent is present yet
+     * @return The instrumentation
+     * @throws IllegalStateException if no instrumentation is available
+     */
+    static synchronized Instrumentation obtain(boolean selfAttach) {
+        Instrumentation inst = find();
+        if (inst != null) {
+            return inst;
+        }
+        if (!selfAttach) {
+            throw new IllegalStateException("No instrumentation available, start with -javaagent:<massasmer.jar> or set live-self-attach=true");
+        }
+
+        attach();
+        inst = find();
+        if (inst == null) {
+            throw new IllegalStateException("Attached the agent, but its instrumentation is not visible");
+        }
+        return inst;
+    }
+
+    private static Instrumentation find() {
+        if (instrumentation != null) {
+            return instrumentation;
+        }
+        try {
+            Class<?> agentClass = Class.forName(LiveTransformerAgent.class.getName(), true, ClassLoader.getSystemClassLoader());
+            if (agentClass == LiveTransformerAgent.class) {
+                return null;
+            }
+            Field field = agentClass.getDeclaredField("instrumentation");
+            field.setAccessible(true);
+            return (Instrumentation) field.get(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not on the system class path, so no agent was loaded from it
+            return null;
+        }
+    }
+
+    // Through reflection, as jdk.attach is missing from JRE-only runtimes
+    private static void attach() {
+        Path jar;
+        try {
+            jar = Path.of(LiveTransformerAgent.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot locate the MassASM jar to attach", e);
+        }
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("MassASM is not loaded from a plain jar (" + jar + "), start with -javaagent instead");
+        }
+
+        String pid = Long.toString(ManagementFactory.getRuntimeMXBean().getPid());
+        try {
+            Class<?> vmClass = Class.forName("com.sun.tools.attach.VirtualMachine");
+            Object vm = vmClass.getMethod("attach", String.class).invoke(null, pid);
+            try {
+                Method loadAgent = vmClass.getMethod("loadAgent", String.class);
+                loadAgent.invoke(vm, jar.toString());
+            } finally {
+                vmClass.getMethod("detach").invoke(vm);
+            }
+            MassasmerPreLaunch.LOGGER.info("Attached {} as agent for live retransformation", jar);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("The jdk.attach module is not available, start with -javaagent instead", e);
+        } catch (ReflectiveOperationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IllegalStateException("Self-attach failed, it requires -Djdk.attach.allowAttachSelf=true: " + cause, cause);
+        }
+    }
+}
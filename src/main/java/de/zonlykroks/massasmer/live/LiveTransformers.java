@@ -0,0 +1,293 @@
+package de.zonlykroks.massasmer.live;
+
+import de.zonlykroks.massasmer.MassASMTransformer;
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.TransformerOptions;
+import de.zonlykroks.massasmer.diagnostics.StartupReport;
+import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import de.zonlykroks.massasmer.util.ClassFileInspector;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import org.apache.logging.log4j.LogManager;
+import org.objectweb.asm.ClassReader;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transformers that can be switched on and off while the game runs, e.g. diagnostic probes.
+ * <p>
+ * Live transformers are registered like regular ones, but start disabled and are never applied by
+ * the class-load pipeline. Enabling one retransforms the already loaded classes its filter matches
+ * through {@link Instrumentation}, in batches; disabling it retransforms them again without it,
+ * which restores the bytes the classes were originally defined with.
+ * <p>
+ * Retransformation cannot change a class's schema: output that adds, removes or changes fields,
+ * methods, modifiers or supertypes is rejected and the class is left as it was. The same applies
+ * to classes loaded while a transformer is enabled, so disabling it can restore them later.
+ * Enabled transformers are applied in registration order.
+ */
+public final class LiveTransformers {
+    private static final LoggerWrapper LOGGER = new LoggerWrapper(LogManager.getLogger("MassASM-Live"), MassasmerPreLaunch.configManager.isLogEnabled());
+
+    private static final Map<String, LiveEntry> TRANSFORMERS = new ConcurrentHashMap<>();
+    // Enabled transformers are applied in the order they were registered
+    private static final List<LiveEntry> REGISTRATION_ORDER = new CopyOnWriteArrayList<>();
+    private static final Set<String> ENABLED = ConcurrentHashMap.newKeySet();
+
+    private static volatile Instrumentation instrumentation;
+    private static ScheduledExecutorService scheduler;
+
+    private LiveTransformers() {}
+
+    /**
+     * Registers a raw live transformer. It stays disabled until {@link #enable(String)} is called.
+     *
+     * @param name        The unique transformer name
+     * @param filter      The classes to transform
+     * @param transformer The transformer, which must not change the class schema
+     */
+    public static void register(String name, TransformerFilter filter, MassASMTransformer.ClassTransformer transformer) {
+        LiveEntry entry = new LiveEntry(name, filter, transformer);
+        if (TRANSFORMERS.putIfAbsent(name, entry) != null) {
+            throw new IllegalArgumentException("Live transformer '" + name + "' is already registered");
+        }
+        REGISTRATION_ORDER.add(entry);
+        LOGGER.info("Registered live transformer '{}' for {}", name, filter);
+    }
+
+    /**
+     * Registers a visitor-based live transformer. It stays disabled until {@link #enable(String)} is called.
+     *
+     * @param name            The unique transformer name
+     * @param filter          The classes to transform
+     * @param options         What the visitor does, used to pick reader and writer flags
+     * @param visitorProvider The visitor provider, whose visitors must not change the class schema
+     */
+    public static void registerVisitor(String name, TransformerFilter filter, TransformerOptions options, MassASMTransformer.VisitorProvider visitorProvider) {
+        register(name, filter, MassASMTransformer.visitorPass(visitorProvider, options));
+    }
+
+    /**
+     * Registers a ClassNode based live transformer. It stays disabled until {@link #enable(String)} is called.
+     *
+     * @param name        The unique transformer name
+     * @param filter      The classes to transform
+     * @param options     What the transformer does, used to pick reader and writer flags
+     * @param transformer The transformer, which must not change the class schema
+     */
+    public static void registerNodeTransformer(String name, TransformerFilter filter, TransformerOptions options, MassASMTransformer.ClassNodeTransformer transformer) {
+        register(name, filter, MassASMTransformer.nodePass(transformer, options));
+    }
+
+    /**
+     * Enables a live transformer and applies it to all loaded classes it matches.
+     * Classes loaded afterwards are transformed while it stays enabled.
+     *
+     * @param name The transformer name
+     * @return The number of classes retransformed
+     * @throws IllegalStateException if no instrumentation is available
+     */
+    public static int enable(String name) {
+        LiveEntry entry = lookup(name);
+        if (!ENABLED.add(name)) return 0;
+
+        try {
+            int count = retransform(entry);
+            StartupReport.recordDecision("Enabled live transformer '" + name + "' on " + count + " loaded classes");
+            return count;
+        } catch (RuntimeException e) {
+            ENABLED.remove(name);
+            throw e;
+        }
+    }
+
+    /**
+     * Enables a live transformer and disables it again after the given time.
+     *
+     * @param name     The transformer name
+     * @param duration How long it stays enabled
+     * @return The number of classes retransformed
+     */
+    public static int enableFor(String name, Duration duration) {
+        int count = enable(name);
+        scheduler().schedule(() -> {
+            try {
+                disable(name);
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to disable live transformer '{}': {}", name, e.toString());
+            }
+        }, duration.toMillis(), TimeUnit.MILLISECONDS);
+        return count;
+    }
+
+    /**
+     * Disables a live transformer and restores the classes it transformed.
+     *
+     * @param name The transformer name
+     * @return The number of classes retransformed
+     */
+    public static int disable(String name) {
+        LiveEntry entry = lookup(name);
+        if (!ENABLED.remove(name)) return 0;
+
+        int count = retransform(entry);
+        StartupReport.recordDecision("Disabled live transformer '" + name + "', restored " + count + " classes");
+        return count;
+    }
+
+    /**
+     * Check if a live transformer is currently enabled.
+     *
+     * @param name The transformer name
+     * @return true if enabled, false otherwise
+     */
+    public static boolean isEnabled(String name) {
+        return ENABLED.contains(name);
+    }
+
+    private static LiveEntry lookup(String name) {
+        LiveEntry entry = TRANSFORMERS.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("No live transformer named '" + name + "'");
+        }
+        return entry;
+    }
+
+    private static synchronized Instrumentation instrumentation() {
+        if (instrumentation == null) {
+            Instrumentation inst = LiveTransformerAgent.obtain(MassasmerPreLaunch.configManager.isLiveSelfAttachEnabled());
+            if (!inst.isRetransformClassesSupported()) {
+                throw new IllegalStateException("The JVM does not support retransforming classes");
+            }
+            inst.addTransformer(new LiveClassFileTransformer(), true);
+            instrumentation = inst;
+        }
+        return instrumentation;
+    }
+
+    private static synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MassASM-Live-Scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    private static int retransform(LiveEntry entry) {
+        Instrumentation inst = instrumentation();
+
+        List<Class<?>> targets = new ArrayList<>();
+        for (Class<?> loaded : inst.getAllLoadedClasses()) {
+            if (inst.isModifiableClass(loaded) && !loaded.isArray() && entry.filter().matches(loaded.getName())) {
+                targets.add(loaded);
+            }
+        }
+
+        int batchSize = Math.max(1, MassasmerPreLaunch.configManager.getLiveBatchSize());
+        long start = System.nanoTime();
+        int failed = 0;
+        for (int i = 0; i < targets.size(); i += batchSize) {
+            List<Class<?>> batch = targets.subList(i, Math.min(targets.size(), i + batchSize));
+            try {
+                inst.retransformClasses(batch.toArray(new Class<?>[0]));
+            } catch (Exception | LinkageError e) {
+                // One bad class fails the whole batch, so retry one by one to isolate it
+                for (Class<?> target : batch) {
+                    try {
+                        inst.retransformClasses(target);
+                    } catch (Exception | LinkageError single) {
+                        failed++;
+                        LOGGER.warn("Could not retransform {} for '{}': {}", target.getName(), entry.name(), single.toString());
+                    }
+                }
+            }
+        }
+
+        LOGGER.info("Retransformed {} classes for live transformer '{}' in {} ms ({} failed)",
+                targets.size() - failed, entry.name(), (System.nanoTime() - start) / 1_000_000, failed);
+        return targets.size() - failed;
+    }
+
+    /**
+     * Checks that a retransformation keeps the class schema: access flags, supertypes, and the
+     * access, name and descriptor of every field and method.
+     *
+     * @param before The class bytes before the transformation
+     * @param after  The class bytes after the transformation
+     * @return true if the schema is unchanged
+     */
+    static boolean sameSchema(byte[] before, byte[] after) {
+        ClassReader beforeReader = new ClassReader(before);
+        ClassReader afterReader = new ClassReader(after);
+        if (beforeReader.getAccess() != afterReader.getAccess()
+                || !beforeReader.getSuperName().equals(afterReader.getSuperName())
+                || !Arrays.equals(beforeReader.getInterfaces(), afterReader.getInterfaces())) {
+            return false;
+        }
+
+        ClassFileInspector beforeClass = ClassFileInspector.of(before);
+        ClassFileInspector afterClass = ClassFileInspector.of(after);
+        return memberSchema(beforeClass.fields()).equals(memberSchema(afterClass.fields()))
+                && memberSchema(beforeClass.methods()).equals(memberSchema(afterClass.methods()));
+    }
+
+    private static Set<String> memberSchema(List<ClassFileInspector.Member> members) {
+        Set<String> schema = new HashSet<>();
+        for (ClassFileInspector.Member member : members) {
+            schema.add(member.access() + " " + member.key());
+        }
+        return schema;
+    }
+
+    private record LiveEntry(String name, TransformerFilter filter, MassASMTransformer.ClassTransformer transformer) {}
+
+    private static final class LiveClassFileTransformer implements ClassFileTransformer {
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+            if (className == null || ENABLED.isEmpty()) return null;
+
+            String name = className.replace('/', '.');
+            byte[] result = classfileBuffer;
+            boolean modified = false;
+
+            for (LiveEntry entry : REGISTRATION_ORDER) {
+                String enabled = entry.name();
+                if (!ENABLED.contains(enabled) || !entry.filter().matches(name)) continue;
+
+                try {
+                    byte[] transformed = entry.transformer().transform(name, result);
+                    if (transformed == null) continue;
+
+                    // Checked for newly loaded classes too, disabling the transformer retransforms them
+                    // back to the original bytes, which only works if the schema stayed the same
+                    if (!sameSchema(classfileBuffer, transformed)) {
+                        LOGGER.error("Live transformer '{}' changed the schema of {}, skipping it for this class", enabled, name);
+                        continue;
+                    }
+                    result = transformed;
+                    modified = true;
+                } catch (RuntimeException | LinkageError e) {
+                    LOGGER.error("Live transformer '{}' failed on {}: {}", enabled, name, e.toString());
+                }
+            }
+            return modified ? result : null;
+        }
+    }
+}
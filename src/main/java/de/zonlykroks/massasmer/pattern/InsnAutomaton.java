@@ -0,0 +1,210 @@
+package de.zonlykroks.massasmer.pattern;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A set of {@link InsnPattern}s compiled into one automaton, finding all of them in a single pass
+ * over a method's instructions.
+ * <p>
+ * The patterns form a trie over their matchers, so patterns with a common prefix test it once.
+ * Scanning keeps the set of partial matches alive at the current instruction and advances all of
+ * them together; edges are indexed by opcode where a state has many of them. Overlapping matches,
+ * including matches of the same pattern, are all reported.
+ */
+public final class InsnAutomaton {
+    // Above this many edges a state indexes them by opcode instead of testing each one
+    private static final int INDEX_THRESHOLD = 4;
+
+    private final List<InsnPattern> patterns;
+    private final State root;
+
+    private InsnAutomaton(List<InsnPattern> patterns, State root) {
+        this.patterns = patterns;
+        this.root = root;
+    }
+
+    /**
+     * Compiles a set of patterns.
+     *
+     * @param patterns The patterns, whose indices identify them in the matches
+     * @return The automaton
+     */
+    public static InsnAutomaton compile(List<InsnPattern> patterns) {
+        State root = new State();
+        for (int i = 0; i < patterns.size(); i++) {
+            State state = root;
+            for (InsnMatcher matcher : patterns.get(i).elements()) {
+                state = state.follow(matcher);
+            }
+            state.accepting.add(i);
+        }
+        root.seal();
+        return new InsnAutomaton(List.copyOf(patterns), root);
+    }
+
+    /**
+     * Gets the compiled patterns.
+     *
+     * @return The patterns, in the order they were compiled
+     */
+    public List<InsnPattern> patterns() {
+        return patterns;
+    }
+
+    /**
+     * Finds all occurrences of all patterns in a method.
+     *
+     * @param classNode The class containing the method
+     * @param method    The method to scan
+     * @return The matches, ordered by their last instruction
+     */
+    public List<InsnMatch> scan(ClassNode classNode, MethodNode method) {
+        return scan(classNode, method, null);
+    }
+
+    /**
+     * Finds all occurrences of some of the patterns in a method.
+     *
+     * @param classNode The class containing the method
+     * @param method    The method to scan
+     * @param enabled   The indices of the patterns to report, or null for all
+     * @return The matches, ordered by their last instruction
+     */
+    public List<InsnMatch> scan(ClassNode classNode, MethodNode method, BitSet enabled) {
+        List<InsnMatch> matches = new ArrayList<>();
+        if (method.instructions.size() == 0) return matches;
+
+        List<Partial> active = new ArrayList<>();
+        List<Partial> next = new ArrayList<>();
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            int opcode = insn.getOpcode();
+            // Labels, line numbers and frames do not break a match
+            if (opcode < 0) continue;
+
+            advance(root, null, insn, opcode, next, matches, classNode, method, enabled);
+            for (Partial partial : active) {
+                advance(partial.state, partial, insn, opcode, next, matches, classNode, method, enabled);
+            }
+
+            List<Partial> swap = active;
+            active = next;
+            next = swap;
+            next.clear();
+        }
+        return matches;
+    }
+
+    private static void advance(State state, Partial prev, AbstractInsnNode insn, int opcode, List<Partial> next,
+                                List<InsnMatch> matches, ClassNode classNode, MethodNode method, BitSet enabled) {
+        Edge[] candidates = state.candidates(opcode);
+        for (Edge edge : candidates) {
+            if (edge.matcher.matches(insn)) {
+                enter(new Partial(edge.target, prev, insn, prev == null ? 1 : prev.length + 1), next, matches, classNode, method, enabled);
+            }
+        }
+        if (state.anyEdges != candidates) {
+            for (Edge edge : state.anyEdges) {
+                if (edge.matcher.matches(insn)) {
+                    enter(new Partial(edge.target, prev, insn, prev == null ? 1 : prev.length + 1), next, matches, classNode, method, enabled);
+                }
+            }
+        }
+    }
+
+    private static void enter(Partial partial, List<Partial> next, List<InsnMatch> matches,
+                              ClassNode classNode, MethodNode method, BitSet enabled) {
+        State target = partial.state;
+        for (int i = 0; i < target.accepts.length; i++) {
+            int pattern = target.accepts[i];
+            if (enabled == null || enabled.get(pattern)) {
+                matches.add(new InsnMatch(classNode, method, pattern, partial.insns()));
+            }
+        }
+        if (target.hasEdges) {
+            next.add(partial);
+        }
+    }
+
+    private record Edge(InsnMatcher matcher, State target) {}
+
+    private record Partial(State state, Partial prev, AbstractInsnNode insn, int length) {
+        AbstractInsnNode[] insns() {
+            AbstractInsnNode[] insns = new AbstractInsnNode[length];
+            Partial partial = this;
+            for (int i = length - 1; i >= 0; i--) {
+                insns[i] = partial.insn;
+                partial = partial.prev;
+            }
+            return insns;
+        }
+    }
+
+    private static final class State {
+        private static final Edge[] NO_EDGES = new Edge[0];
+
+        private final List<Edge> edges = new ArrayList<>();
+        private final List<Integer> accepting = new ArrayList<>();
+
+        private int[] accepts;
+        private boolean hasEdges;
+        // Edges of any opcode, tested in addition to the opcode-specific ones
+        private Edge[] anyEdges;
+        // Either all edges when unindexed, or null with byOpcode set
+        private Edge[] allEdges;
+        private Edge[][] byOpcode;
+
+        State follow(InsnMatcher matcher) {
+            for (Edge edge : edges) {
+                if (edge.matcher.equals(matcher)) {
+                    return edge.target;
+                }
+            }
+            State target = new State();
+            edges.add(new Edge(matcher, target));
+            return target;
+        }
+
+        void seal() {
+            accepts = accepting.stream().mapToInt(Integer::intValue).sorted().toArray();
+            hasEdges = !edges.isEmpty();
+
+            if (edges.size() <= INDEX_THRESHOLD) {
+                allEdges = edges.toArray(NO_EDGES);
+                anyEdges = allEdges;
+            } else {
+                List<Edge> any = new ArrayList<>();
+                List<List<Edge>> indexed = new ArrayList<>();
+                for (int i = 0; i < 256; i++) indexed.add(null);
+                for (Edge edge : edges) {
+                    int opcode = edge.matcher.opcode();
+                    if (opcode < 0) {
+                        any.add(edge);
+                    } else {
+                        if (indexed.get(opcode) == null) indexed.set(opcode, new ArrayList<>());
+                        indexed.get(opcode).add(edge);
+                    }
+                }
+                anyEdges = any.toArray(NO_EDGES);
+                byOpcode = new Edge[256][];
+                for (int i = 0; i < 256; i++) {
+                    byOpcode[i] = indexed.get(i) == null ? NO_EDGES : indexed.get(i).toArray(NO_EDGES);
+                }
+            }
+
+            for (Edge edge : edges) {
+                edge.target.seal();
+            }
+        }
+
+        // Unindexed states return all edges, which callers recognize as covering the any-opcode edges too
+        Edge[] candidates(int opcode) {
+            return byOpcode == null ? allEdges : byOpcode[opcode];
+        }
+    }
+}
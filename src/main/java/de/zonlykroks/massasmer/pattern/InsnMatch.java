@@ -0,0 +1,105 @@
+package de.zonlykroks.massasmer.pattern;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * One occurrence of an {@link InsnPattern} in a method.
+ * <p>
+ * Matches are reported after the whole method was scanned, so an earlier callback may already
+ * have removed instructions of a later, overlapping match. Check {@link #isIntact()} before
+ * rewriting.
+ */
+public final class InsnMatch {
+    private final ClassNode classNode;
+    private final MethodNode method;
+    private final int patternIndex;
+    private final AbstractInsnNode[] insns;
+
+    InsnMatch(ClassNode classNode, MethodNode method, int patternIndex, AbstractInsnNode[] insns) {
+        this.classNode = classNode;
+        this.method = method;
+        this.patternIndex = patternIndex;
+        this.insns = insns;
+    }
+
+    /**
+     * Gets the class containing the match.
+     *
+     * @return The class
+     */
+    public ClassNode classNode() {
+        return classNode;
+    }
+
+    /**
+     * Gets the method containing the match.
+     *
+     * @return The method
+     */
+    public MethodNode method() {
+        return method;
+    }
+
+    /**
+     * Gets the index of the matched pattern in the list the automaton was compiled from.
+     *
+     * @return The pattern index
+     */
+    public int patternIndex() {
+        return patternIndex;
+    }
+
+    /**
+     * Gets the instruction matched by the given pattern element.
+     *
+     * @param element The element index
+     * @return The instruction
+     */
+    public AbstractInsnNode get(int element) {
+        return insns[element];
+    }
+
+    /**
+     * Gets the number of matched instructions.
+     *
+     * @return The pattern length
+     */
+    public int size() {
+        return insns.length;
+    }
+
+    /**
+     * Gets the first matched instruction.
+     *
+     * @return The instruction
+     */
+    public AbstractInsnNode first() {
+        return insns[0];
+    }
+
+    /**
+     * Gets the last matched instruction.
+     *
+     * @return The instruction
+     */
+    public AbstractInsnNode last() {
+        return insns[insns.length - 1];
+    }
+
+    /**
+     * Checks that no matched instruction was removed from the method since the scan.
+     *
+     * @return true if all matched instructions are still in the method
+     */
+    public boolean isIntact() {
+        for (AbstractInsnNode insn : insns) {
+            // InsnList.remove unlinks the node, only the first instruction has no predecessor
+            if (insn.getPrevious() == null && method.instructions.getFirst() != insn) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
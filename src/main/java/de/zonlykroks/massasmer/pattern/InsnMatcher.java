@@ -0,0 +1,148 @@
+package de.zonlykroks.massasmer.pattern;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Matches a single instruction of an {@link InsnPattern}.
+ * <p>
+ * Matchers built from the same factory arguments are equal, which lets patterns sharing a prefix
+ * share the automaton states for it. {@code null} owners, names and descriptors match anything.
+ *
+ * @param opcode    The opcode to match, or -1 for any real instruction
+ * @param owner     The internal name of the method/field owner or of the type operand
+ * @param name      The method or field name
+ * @param desc      The method or field descriptor
+ * @param condition An additional condition, or null
+ */
+public record InsnMatcher(int opcode, String owner, String name, String desc, Predicate<AbstractInsnNode> condition) {
+    private static final InsnMatcher ANY = new InsnMatcher(-1, null, null, null, null);
+
+    /**
+     * Matches any real instruction, but no labels, line numbers or frames.
+     *
+     * @return The matcher
+     */
+    public static InsnMatcher any() {
+        return ANY;
+    }
+
+    /**
+     * Matches any instruction with the given opcode.
+     *
+     * @param opcode The opcode, e.g. {@link Opcodes#POP}
+     * @return The matcher
+     */
+    public static InsnMatcher opcode(int opcode) {
+        return new InsnMatcher(opcode, null, null, null, null);
+    }
+
+    /**
+     * Matches a method call.
+     *
+     * @param opcode The invoke opcode, e.g. {@link Opcodes#INVOKEVIRTUAL}
+     * @param owner  The internal name of the owner, or null
+     * @param name   The method name, or null
+     * @param desc   The method descriptor, or null
+     * @return The matcher
+     */
+    public static InsnMatcher method(int opcode, String owner, String name, String desc) {
+        return new InsnMatcher(opcode, owner, name, desc, null);
+    }
+
+    /**
+     * Matches a field access.
+     *
+     * @param opcode The field opcode, e.g. {@link Opcodes#GETSTATIC}
+     * @param owner  The internal name of the owner, or null
+     * @param name   The field name, or null
+     * @param desc   The field descriptor, or null
+     * @return The matcher
+     */
+    public static InsnMatcher field(int opcode, String owner, String name, String desc) {
+        return new InsnMatcher(opcode, owner, name, desc, null);
+    }
+
+    /**
+     * Matches a type instruction: NEW, ANEWARRAY, CHECKCAST or INSTANCEOF.
+     *
+     * @param opcode The type opcode
+     * @param type   The internal name of the type operand, or null
+     * @return The matcher
+     */
+    public static InsnMatcher type(int opcode, String type) {
+        return new InsnMatcher(opcode, type, null, null, null);
+    }
+
+    /**
+     * Matches an LDC loading the given constant.
+     *
+     * @param constant The constant, as stored in {@link LdcInsnNode#cst}
+     * @return The matcher
+     */
+    public static InsnMatcher ldc(Object constant) {
+        return new InsnMatcher(Opcodes.LDC, null, null, null, new LdcCondition(constant));
+    }
+
+    /**
+     * Matches any real instruction passing the given condition.
+     *
+     * @param condition The condition
+     * @return The matcher
+     */
+    public static InsnMatcher where(Predicate<AbstractInsnNode> condition) {
+        return new InsnMatcher(-1, null, null, null, condition);
+    }
+
+    /**
+     * Adds a condition to this matcher.
+     *
+     * @param extra The additional condition
+     * @return A matcher requiring both this matcher and the condition
+     */
+    public InsnMatcher and(Predicate<AbstractInsnNode> extra) {
+        return new InsnMatcher(opcode, owner, name, desc, condition == null ? extra : condition.and(extra));
+    }
+
+    /**
+     * Tests an instruction.
+     *
+     * @param insn The instruction, which must be a real instruction
+     * @return true if it matches, false otherwise
+     */
+    public boolean matches(AbstractInsnNode insn) {
+        if (opcode >= 0 && insn.getOpcode() != opcode) return false;
+
+        if (owner != null || name != null || desc != null) {
+            if (insn instanceof MethodInsnNode method) {
+                if (!matches(owner, method.owner) || !matches(name, method.name) || !matches(desc, method.desc)) return false;
+            } else if (insn instanceof FieldInsnNode field) {
+                if (!matches(owner, field.owner) || !matches(name, field.name) || !matches(desc, field.desc)) return false;
+            } else if (insn instanceof TypeInsnNode type) {
+                if (!matches(owner, type.desc)) return false;
+            } else {
+                return false;
+            }
+        }
+        return condition == null || condition.test(insn);
+    }
+
+    private static boolean matches(String expected, String actual) {
+        return expected == null || expected.equals(actual);
+    }
+
+    // A record so equal constants give equal matchers
+    private record LdcCondition(Object constant) implements Predicate<AbstractInsnNode> {
+        @Override
+        public boolean test(AbstractInsnNode insn) {
+            return insn instanceof LdcInsnNode ldc && Objects.equals(ldc.cst, constant);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package de.zonlykroks.massasmer.pattern;
+
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sequence of instructions to look for, e.g. "INVOKEVIRTUAL X.foo, then CHECKCAST Y".
+ * <p>
+ * Patterns match consecutive real instructions; labels, line numbers and frames between them are
+ * skipped, so a pattern still matches across a line break. Patterns do not match across
+ * instructions they do not name, use {@link InsnMatcher#any()} for gaps of a known length.
+ */
+public final class InsnPattern {
+    private final List<InsnMatcher> elements;
+
+    private InsnPattern(List<InsnMatcher> elements) {
+        if (elements.isEmpty()) {
+            throw new IllegalArgumentException("An instruction pattern needs at least one element");
+        }
+        this.elements = List.copyOf(elements);
+    }
+
+    /**
+     * Creates a pattern from its matchers.
+     *
+     * @param elements The matchers, one per instruction
+     * @return The pattern
+     */
+    public static InsnPattern of(InsnMatcher... elements) {
+        return new InsnPattern(List.of(elements));
+    }
+
+    /**
+     * Creates a builder for a new pattern.
+     *
+     * @return The builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the matchers of this pattern.
+     *
+     * @return The matchers, one per instruction
+     */
+    public List<InsnMatcher> elements() {
+        return elements;
+    }
+
+    /**
+     * Gets the number of instructions this pattern matches.
+     *
+     * @return The pattern length
+     */
+    public int length() {
+        return elements.size();
+    }
+
+    @Override
+    public String toString() {
+        return "InsnPattern" + elements;
+    }
+
+    public static final class Builder {
+        private final List<InsnMatcher> elements = new ArrayList<>();
+
+        private Builder() {}
+
+        /**
+         * Appends a matcher.
+         *
+         * @param matcher The matcher of the next instruction
+         * @return This builder
+         */
+        public Builder then(InsnMatcher matcher) {
+            elements.add(matcher);
+            return this;
+        }
+
+        /**
+         * Appends any real instruction.
+         *
+         * @return This builder
+         */
+        public Builder any() {
+            return then(InsnMatcher.any());
+        }
+
+        /**
+         * Appends an instruction with the given opcode.
+         *
+         * @param opcode The opcode
+         * @return This builder
+         */
+        public Builder opcode(int opcode) {
+            return then(InsnMatcher.opcode(opcode));
+        }
+
+        /**
+         * Appends an INVOKEVIRTUAL call.
+         *
+         * @param owner The internal name of the owner, or null
+         * @param name  The method name, or null
+         * @param desc  The method descriptor, or null
+         * @return This builder
+         */
+        public Builder invokeVirtual(String owner, String name, String desc) {
+            return then(InsnMatcher.method(Opcodes.INVOKEVIRTUAL, owner, name, desc));
+        }
+
+        /**
+         * Appends an INVOKEINTERFACE call.
+         *
+         * @param owner The internal name of the owner, or null
+         * @param name  The method name, or null
+         * @param desc  The method descriptor, or null
+         * @return This builder
+         */
+        public Builder invokeInterface(String owner, String name, String desc) {
+            return then(InsnMatcher.method(Opcodes.INVOKEINTERFACE, owner, name, desc));
+        }
+
+        /**
+         * Appends an INVOKESTATIC call.
+         *
+         * @param owner The internal name of the owner, or null
+         * @param name  The method name, or null
+         * @param desc  The method descriptor, or null
+         * @return This builder
+         */
+        public Builder invokeStatic(String owner, String name, String desc) {
+            return then(InsnMatcher.method(Opcodes.INVOKESTATIC, owner, name, desc));
+        }
+
+        /**
+         * Appends an INVOKESPECIAL call.
+         *
+         * @param owner The internal name of the owner, or null
+         * @param name  The method name, or null
+         * @param desc  The method descriptor, or null
+         * @return This builder
+         */
+        public Builder invokeSpecial(String owner, String name, String desc) {
+            return then(InsnMatcher.method(Opcodes.INVOKESPECIAL, owner, name, desc));
+        }
+
+        /**
+         * Appends a field access.
+         *
+         * @param opcode The field opcode
+         * @param owner  The internal name of the owner, or null
+         * @param name   The field name, or null
+         * @param desc   The field descriptor, or null
+         * @return This builder
+         */
+        public Builder field(int opcode, String owner, String name, String desc) {
+            return then(InsnMatcher.field(opcode, owner, name, desc));
+        }
+
+        /**
+         * Appends a CHECKCAST.
+         *
+         * @param type The internal name of the type, or null
+         * @return This builder
+         */
+        public Builder checkcast(String type) {
+            return then(InsnMatcher.type(Opcodes.CHECKCAST, type));
+        }
+
+        /**
+         * Appends an INSTANCEOF.
+         *
+         * @param type The internal name of the type, or null
+         * @return This builder
+         */
+        public Builder instanceOf(String type) {
+            return then(InsnMatcher.type(Opcodes.INSTANCEOF, type));
+        }
+
+        /**
+         * Appends a NEW.
+         *
+         * @param type The internal name of the type, or null
+         * @return This builder
+         */
+        public Builder newInstance(String type) {
+            return then(InsnMatcher.type(Opcodes.NEW, type));
+        }
+
+        /**
+         * Appends an LDC of the given constant.
+         *
+         * @param constant The constant
+         * @return This builder
+         */
+        public Builder ldc(Object constant) {
+            return then(InsnMatcher.ldc(constant));
+        }
+
+        /**
+         * Builds the pattern.
+         *
+         * @return The pattern
+         * @throws IllegalArgumentException if no element was added
+         */
+        public InsnPattern build() {
+            return new InsnPattern(elements);
+        }
+    }
+}
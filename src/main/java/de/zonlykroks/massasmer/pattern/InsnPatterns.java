@@ -0,0 +1,114 @@
+package de.zonlykroks.massasmer.pattern;
+
+import de.zonlykroks.massasmer.MassASMTransformer;
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.TransformerOptions;
+import de.zonlykroks.massasmer.filter.Filters;
+import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import org.apache.logging.log4j.LogManager;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Registry of instruction patterns shared by all mods.
+ * <p>
+ * Instead of each node transformer walking every method on its own, pattern handlers are
+ * registered here and compiled into one {@link InsnAutomaton} when the transformer registry is
+ * frozen. A single node transformer named {@value #TRANSFORMER_NAME} then scans each method once
+ * and dispatches the matches of all patterns whose class filter accepts the class.
+ */
+public final class InsnPatterns {
+    public static final String TRANSFORMER_NAME = "insn-patterns";
+
+    private static final LoggerWrapper LOGGER = new LoggerWrapper(LogManager.getLogger("MassASM-InsnPatterns"), MassasmerPreLaunch.configManager.isLogEnabled());
+
+    private static final List<Registration> REGISTRATIONS = new ArrayList<>();
+    private static boolean installed;
+
+    private InsnPatterns() {}
+
+    /**
+     * Called for each occurrence of a registered pattern.
+     */
+    @FunctionalInterface
+    public interface InsnMatchHandler {
+        /**
+         * Handles a match, e.g. by rewriting the matched instructions.
+         *
+         * @param match The match
+         * @return true if the class was modified, false otherwise
+         */
+        boolean onMatch(InsnMatch match);
+    }
+
+    /**
+     * Registers a pattern handler.
+     *
+     * @param name    A name identifying the handler in logs
+     * @param filter  The classes to look for the pattern in
+     * @param pattern The instruction pattern
+     * @param handler Called for each match, in method order
+     * @throws IllegalStateException if the transformer registry is already frozen
+     */
+    public static synchronized void register(String name, TransformerFilter filter, InsnPattern pattern, InsnMatchHandler handler) {
+        if (installed) {
+            throw new IllegalStateException("Cannot register pattern '" + name + "', the registry is frozen");
+        }
+        REGISTRATIONS.add(new Registration(name, filter, pattern, handler));
+        LOGGER.info("Registered instruction pattern '{}' for {}: {}", name, filter, pattern);
+    }
+
+    /**
+     * Compiles the registered patterns and registers the node transformer running them.
+     * Called once while the transformer registry is frozen.
+     */
+    public static synchronized void install() {
+        if (installed) return;
+        installed = true;
+        if (REGISTRATIONS.isEmpty()) return;
+
+        List<Registration> registrations = List.copyOf(REGISTRATIONS);
+        TransformerFilter filter = registrations.get(0).filter();
+        for (int i = 1; i < registrations.size(); i++) {
+            filter = Filters.or(filter, registrations.get(i).filter());
+        }
+
+        InsnAutomaton automaton = InsnAutomaton.compile(registrations.stream().map(Registration::pattern).toList());
+        MassASMTransformer.registerNodeTransformer(TRANSFORMER_NAME, filter, TransformerOptions.DEFAULT, new PatternTransformer(registrations, automaton));
+        LOGGER.info("Compiled {} instruction patterns into a single pass", registrations.size());
+    }
+
+    private record Registration(String name, TransformerFilter filter, InsnPattern pattern, InsnMatchHandler handler) {}
+
+    private record PatternTransformer(List<Registration> registrations, InsnAutomaton automaton) implements MassASMTransformer.ClassNodeTransformer {
+        @Override
+        public boolean transform(String className, ClassNode classNode) {
+            BitSet enabled = new BitSet(registrations.size());
+            for (int i = 0; i < registrations.size(); i++) {
+                if (registrations.get(i).filter().matches(className)) {
+                    enabled.set(i);
+                }
+            }
+            if (enabled.isEmpty()) return false;
+
+            boolean modified = false;
+            for (MethodNode method : classNode.methods) {
+                for (InsnMatch match : automaton.scan(classNode, method, enabled)) {
+                    Registration registration = registrations.get(match.patternIndex());
+                    try {
+                        modified |= registration.handler().onMatch(match);
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Pattern handler '{}' failed in {}.{}: {}", registration.name(), className, method.name, e.toString());
+                        throw e;
+                    }
+                }
+            }
+            return modified;
+        }
+    }
+}
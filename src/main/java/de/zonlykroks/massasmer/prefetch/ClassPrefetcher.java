@@ -0,0 +1,202 @@
+package de.zonlykroks.massasmer.prefetch;
+
+import de.zonlykroks.massasmer.config.MassAsmConfigManager;
+import de.zonlykroks.massasmer.util.ClassFileInspector;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import org.apache.logging.log4j.LogManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Reads class bytes ahead of time on virtual threads, before the loader asks for them.
+ * <p>
+ * After a class was loaded, the classes it references in its constant pool are queued. Prefetch
+ * threads read their bytes, so jar I/O and inflation run concurrently with the loader, and the
+ * loader later takes the bytes from here instead of reading them itself. Prefetch threads never
+ * transform: transformers, diagnostics and statistics only run on the loading thread.
+ * <p>
+ * Prefetching is best effort: names are dropped when the queue is full, the oldest prefetched
+ * bytes are dropped when too many wait to be taken, classes referenced by prefetched classes are
+ * not followed, and the prefetcher shuts down after a configured number of classes, after a
+ * configured time, or when {@link #shutdown()} or {@link #stopAll()} is called.
+ */
+public class ClassPrefetcher {
+    // Names remembered to avoid queueing a class twice, forgotten at once beyond this
+    private static final int MAX_SEEN = 65_536;
+
+    private static volatile boolean stopped = false;
+
+    private final LoggerWrapper logger;
+    private final boolean enabled;
+    private final int limit;
+    private final long deadline;
+    private final Function<String, byte[]> reader;
+    private final ThreadPoolExecutor executor;
+
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final Map<String, byte[]> prefetched;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder taken = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Creates a prefetcher.
+     *
+     * @param config The configuration
+     * @param reader Reads the bytes of a class by name, or returns null if it is not worth reading
+     *               ahead, called on prefetch threads
+     */
+    public ClassPrefetcher(MassAsmConfigManager config, Function<String, byte[]> reader) {
+        this.logger = new LoggerWrapper(LogManager.getLogger("MassASM-Prefetch"), config.isLogEnabled());
+        this.enabled = config.isPrefetchEnabled();
+        this.limit = config.getPrefetchLimit();
+        this.deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(0, config.getPrefetchMaxSeconds()));
+        this.reader = reader;
+
+        int capacity = Math.max(1, config.getPrefetchQueueSize());
+        this.prefetched = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                // Bytes of classes the loader never asks for must not pile up
+                return size() > capacity;
+            }
+        };
+
+        if (enabled) {
+            int threads = Math.max(1, config.getPrefetchThreads());
+            // Bounded so prefetching never holds more than a queue's worth of pending names
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(capacity),
+                    Thread.ofVirtual().name("MassASM-Prefetch-", 0).factory(),
+                    new ThreadPoolExecutor.DiscardPolicy());
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "MassASM-Prefetch-Shutdown"));
+            logger.info("Prefetching referenced classes on {} virtual threads", threads);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * Stops all prefetchers, for example once startup is over and classes are rarely loaded.
+     * Prefetchers shut down the next time a class is loaded.
+     */
+    public static void stopAll() {
+        stopped = true;
+    }
+
+    /**
+     * Check if prefetching is enabled and has not been shut down.
+     * @return true if names are still accepted, false otherwise
+     */
+    public boolean isActive() {
+        return enabled && !executor.isShutdown();
+    }
+
+    /**
+     * Takes the prefetched bytes of a class, which are only handed out once.
+     *
+     * @param className The class being loaded
+     * @return The bytes, or null if they were not prefetched
+     */
+    public byte[] take(String className) {
+        if (!enabled) return null;
+
+        byte[] bytes;
+        synchronized (prefetched) {
+            bytes = prefetched.remove(className);
+        }
+        if (bytes != null) taken.increment();
+        return bytes;
+    }
+
+    /**
+     * Queues the classes referenced by a class that was just loaded.
+     *
+     * @param className  The class that was loaded, which is never queued again
+     * @param classBytes Its class bytes
+     */
+    public void onLoaded(String className, byte[] classBytes) {
+        if (!isActive()) return;
+        if (stopped || System.nanoTime() - deadline > 0) {
+            logger.info("Prefetching stopped after {} queued classes", queued.get());
+            shutdown();
+            return;
+        }
+        remember(className);
+
+        ClassFileInspector inspector;
+        try {
+            inspector = ClassFileInspector.of(classBytes);
+        } catch (RuntimeException e) {
+            return;
+        }
+
+        for (int i = 1; i < inspector.constantPoolCount(); i++) {
+            if (inspector.tag(i) != ClassFileInspector.CONSTANT_CLASS) continue;
+
+            String reference = inspector.classNameAt(i);
+            // Arrays resolve to their component type, which is referenced on its own if it is loaded
+            if (reference.startsWith("[")) continue;
+
+            String name = reference.replace('/', '.');
+            if (!remember(name)) continue;
+
+            if (queued.incrementAndGet() > limit) {
+                logger.info("Prefetched {} classes, stopping", limit);
+                shutdown();
+                return;
+            }
+            executor.execute(() -> run(name));
+        }
+    }
+
+    /**
+     * Stops prefetching. Queued names and prefetched bytes are dropped, running reads finish.
+     */
+    public void shutdown() {
+        if (executor == null || executor.isShutdown()) return;
+
+        // Not shutdownNow(): interrupting a thread inside an interruptible channel read would close
+        // the channel of a shared jar file system
+        executor.shutdown();
+        executor.getQueue().clear();
+        seen.clear();
+        synchronized (prefetched) {
+            prefetched.clear();
+        }
+        logger.info("Loader took {} of {} queued classes from the prefetcher", taken.sum(), Math.min(queued.get(), limit));
+        if (failures.sum() > 0) {
+            logger.warn("{} prefetch reads failed, the classes are read again when they load", failures.sum());
+        }
+    }
+
+    private boolean remember(String className) {
+        // Forgetting only costs a redundant read of a class queued before
+        if (seen.size() >= MAX_SEEN) seen.clear();
+        return seen.add(className);
+    }
+
+    private void run(String className) {
+        if (stopped || executor.isShutdown()) return;
+
+        try {
+            byte[] bytes = reader.apply(className);
+            if (bytes == null || executor.isShutdown()) return;
+            synchronized (prefetched) {
+                prefetched.put(className, bytes);
+            }
+        } catch (RuntimeException | LinkageError e) {
+            // The loading thread reads the class itself and reports its own error
+            failures.increment();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.zonlykroks.massasmer.pretransform;
+
+import de.zonlykroks.massasmer.MassASMTransformer;
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.util.ClassByteBuffers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Offline entry point used by the {@code massasmPreTransform} Gradle task. Runs the given
+ * mass-asm entrypoints, applies the registered transformers to every class of the input jar
+ * and writes a {@link PreTransformedBundle}.
+ * <p>
+ * Usage: {@code PreTransformRunner --input <game.jar> --output <bundle.jar> --entrypoint <class>...}
+ */
+public final class PreTransformRunner {
+    private PreTransformRunner() {}
+
+    public static void main(String[] args) throws IOException {
+        Path input = null;
+        Path output = null;
+        List<String> entrypoints = new ArrayList<>();
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--input" -> input = Path.of(args[i + 1]);
+                case "--output" -> output = Path.of(args[i + 1]);
+                case "--entrypoint" -> entrypoints.add(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+        if (input == null || output == null) {
+            throw new IllegalArgumentException("Usage: PreTransformRunner --input <game.jar> --output <bundle.jar> --entrypoint <class>...");
+        }
+
+        runEntrypoints(entrypoints);
+        MassASMTransformer.freeze();
+        MassasmerPreLaunch.LOGGER.info("Pre-transforming {} with transformers {}", input, MassASMTransformer.getTransformerNames());
+
+        int seen = 0;
+        int transformed = 0;
+        StringBuilder manifest = new StringBuilder();
+        manifest.append(PreTransformedBundle.TRANSFORMERS_HEADER)
+                .append(String.join(",", MassASMTransformer.getTransformerNames()))
+                .append('\n')
+                .append(PreTransformedBundle.CONFIG_HEADER)
+                .append(MassasmerPreLaunch.configManager.getTransformerConfigHash())
+                .append('\n');
+
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (ZipFile zip = new ZipFile(input.toFile());
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(output))) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) continue;
+
+                String className = entry.getName()
+                        .substring(0, entry.getName().length() - ".class".length())
+                        .replace('/', '.');
+                if (!MassasmerPreLaunch.configManager.getTransformerExclusionFilter().matches(className)) continue;
+
+                byte[] classBytes;
+                try (InputStream is = zip.getInputStream(entry)) {
+                    classBytes = ClassByteBuffers.readFully(is);
+                }
+
+                byte[] result = MassASMTransformer.applyTransformers(className, classBytes);
+                seen++;
+
+                manifest.append(className).append(' ')
+                        .append(PreTransformedBundle.hash(classBytes)).append(' ');
+                if (result != null) {
+                    transformed++;
+                    manifest.append(PreTransformedBundle.hash(result));
+                    out.putNextEntry(new ZipEntry(entry.getName()));
+                    out.write(result);
+                    out.closeEntry();
+                } else {
+                    manifest.append(PreTransformedBundle.UNCHANGED);
+                }
+                // Filters resolved differently at runtime, e.g. mapped names, must not reuse this result
+                manifest.append(' ').append(MassASMTransformer.encodedMatchSignature(className)).append('\n');
+            }
+
+            out.putNextEntry(new ZipEntry(PreTransformedBundle.MANIFEST));
+            out.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+
+        MassasmerPreLaunch.LOGGER.info("Pre-transformed {} of {} classes into {}", transformed, seen, output);
+    }
+
+    private static void runEntrypoints(List<String> entrypoints) {
+        for (String entrypoint : entrypoints) {
+            try {
+                Object instance = Class.forName(entrypoint).getDeclaredConstructor().newInstance();
+                MassasmerPreLaunch.LOGGER.info("Registering Entrypoint {}", entrypoint);
+                ((Runnable) instance).run();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // A bundle built without this entrypoint's transformers is rejected at runtime
+                throw new IllegalStateException("Entrypoint " + entrypoint + " cannot run offline, not writing a bundle", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package de.zonlykroks.massasmer.pretransform;
+
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.util.ClassByteBuffers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A bundle of classes transformed at build time by {@link PreTransformRunner}.
+ * <p>
+ * The bundle is a jar holding the transformed class files and a manifest listing, for every
+ * class the runner saw, the SHA-256 of the input bytes, whether any transformer changed it, and
+ * which transformers matched it. A class is only served from the bundle when the bytes the game
+ * is about to load hash to the same value and the same transformers match it at runtime,
+ * everything else falls back to live transformation. The whole bundle is ignored if it was
+ * built with other transformers or another transformer configuration.
+ */
+public class PreTransformedBundle {
+    public static final String MANIFEST = "META-INF/massasm-pretransformed.txt";
+    public static final String TRANSFORMERS_HEADER = "# transformers: ";
+    public static final String CONFIG_HEADER = "# config: ";
+    public static final String UNCHANGED = "-";
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final ZipFile zip;
+    private final Map<String, Entry> entries;
+
+    private PreTransformedBundle(ZipFile zip, Map<String, Entry> entries) {
+        this.zip = zip;
+        this.entries = entries;
+    }
+
+    /**
+     * Opens a bundle, validating it was built for the currently registered transformers and configuration.
+     *
+     * @param file             The bundle jar
+     * @param transformerNames The names of all registered transformers, in registration order
+     * @param configHash       The hash of the transformer configuration, see {@code MassAsmConfigManager#getTransformerConfigHash}
+     * @return The bundle, or null if it does not exist, cannot be read or was built for other transformers or configuration
+     */
+    public static PreTransformedBundle open(Path file, List<String> transformerNames, String configHash) {
+        if (!Files.isRegularFile(file)) {
+            MassasmerPreLaunch.LOGGER.warn("Pre-transformed bundle {} does not exist, transforming live", file);
+            return null;
+        }
+
+        try {
+            ZipFile zip = new ZipFile(file.toFile());
+            ZipEntry manifest = zip.getEntry(MANIFEST);
+            if (manifest == null) {
+                zip.close();
+                MassasmerPreLaunch.LOGGER.warn("Pre-transformed bundle {} has no manifest, transforming live", file);
+                return null;
+            }
+
+            Map<String, Entry> entries = new HashMap<>();
+            String expectedTransformers = String.join(",", transformerNames);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(zip.getInputStream(manifest), StandardCharsets.UTF_8))) {
+                String line;
+                boolean configMatches = false;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(TRANSFORMERS_HEADER)) {
+                        String bundledTransformers = line.substring(TRANSFORMERS_HEADER.length());
+                        if (!bundledTransformers.equals(expectedTransformers)) {
+                            zip.close();
+                            MassasmerPreLaunch.LOGGER.warn("Pre-transformed bundle {} was built for transformers [{}] but [{}] are registered, transforming live",
+                                    file, bundledTransformers, expectedTransformers);
+                            return null;
+                        }
+                        continue;
+                    }
+                    if (line.startsWith(CONFIG_HEADER)) {
+                        configMatches = line.substring(CONFIG_HEADER.length()).equals(configHash);
+                        continue;
+                    }
+                    if (line.isBlank() || line.startsWith("#")) continue;
+
+                    String[] parts = line.split(" ");
+                    // Entries without a match signature come from older runners and are never trusted
+                    if (parts.length != 4) continue;
+                    entries.put(parts[0], new Entry(parts[1], !parts[2].equals(UNCHANGED), parts[3]));
+                }
+                if (!configMatches) {
+                    zip.close();
+                    MassasmerPreLaunch.LOGGER.warn("Pre-transformed bundle {} was built with another transformer configuration, transforming live", file);
+                    return null;
+                }
+            }
+
+            MassasmerPreLaunch.LOGGER.info("Loaded pre-transformed bundle {} with {} classes", file, entries.size());
+            return new PreTransformedBundle(zip, entries);
+        } catch (IOException e) {
+            MassasmerPreLaunch.LOGGER.error("Failed to open pre-transformed bundle {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Looks up the build-time result for a class.
+     *
+     * @param className      The fully qualified class name
+     * @param inputBytes     The bytes about to be transformed
+     * @param matchSignature Which transformers match the class at runtime, see {@code MassASMTransformer#encodedMatchSignature}
+     * @return The lookup result, {@link Lookup#MISS} if the class is unknown, its input changed or other transformers match it
+     */
+    public Lookup lookup(String className, byte[] inputBytes, String matchSignature) {
+        Entry entry = entries.get(className);
+        if (entry == null || !entry.matchSignature().equals(matchSignature) || !entry.inputHash().equals(hash(inputBytes))) {
+            return Lookup.MISS;
+        }
+        if (!entry.transformed()) {
+            return Lookup.UNCHANGED;
+        }
+
+        ZipEntry zipEntry = zip.getEntry(className.replace('.', '/') + ".class");
+        if (zipEntry == null) return Lookup.MISS;
+        try (InputStream is = zip.getInputStream(zipEntry)) {
+            return new Lookup(Lookup.Result.TRANSFORMED, ClassByteBuffers.readFully(is));
+        } catch (IOException e) {
+            return Lookup.MISS;
+        }
+    }
+
+    /**
+     * Hashes class bytes the same way the manifest does.
+     *
+     * @param bytes The bytes to hash
+     * @return The lower-case hex SHA-256 of the bytes
+     */
+    public static String hash(byte[] bytes) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return HexFormat.of().formatHex(digest.digest(bytes));
+    }
+
+    /**
+     * Result of a bundle lookup. {@code bytes} is only set for {@link Result#TRANSFORMED}.
+     */
+    public record Lookup(Result result, byte[] bytes) {
+        public static final Lookup MISS = new Lookup(Result.MISS, null);
+        public static final Lookup UNCHANGED = new Lookup(Result.UNCHANGED, null);
+
+        public enum Result {
+            /** The bundle has no valid result, transform live */
+            MISS,
+            /** No transformer changes the class */
+            UNCHANGED,
+            /** The bundled bytes can be served as they are */
+            TRANSFORMED
+        }
+    }
+
+    private record Entry(String inputHash, boolean transformed, String matchSignature) {}
+}
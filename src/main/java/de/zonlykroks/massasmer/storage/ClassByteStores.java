@@ -0,0 +1,37 @@
+package de.zonlykroks.massasmer.storage;
+
+import de.zonlykroks.massasmer.diagnostics.StartupReport;
+import de.zonlykroks.massasmer.storage.api.ClassByteStore;
+import de.zonlykroks.massasmer.storage.impl.DeflateClassByteStore;
+import de.zonlykroks.massasmer.storage.impl.HeapClassByteStore;
+import de.zonlykroks.massasmer.storage.impl.OffHeapClassByteStore;
+
+import java.util.List;
+
+/**
+ * Factory class for the supported retained class byte storage modes.
+ */
+public final class ClassByteStores {
+    private ClassByteStores() {}
+
+    /**
+     * Creates a store for the given mode and adds its statistics to the startup report.
+     *
+     * @param mode One of {@code heap}, {@code deflate}, {@code offheap} or {@code offheap-deflate},
+     *             unknown modes fall back to {@code heap}
+     * @return A new, empty store
+     */
+    public static ClassByteStore create(String mode) {
+        ClassByteStore store = switch (mode) {
+            case "deflate" -> new DeflateClassByteStore(new HeapClassByteStore());
+            case "offheap" -> new OffHeapClassByteStore();
+            case "offheap-deflate" -> new DeflateClassByteStore(new OffHeapClassByteStore());
+            default -> new HeapClassByteStore();
+        };
+
+        StartupReport.registerSection("Retained class bytes", () -> List.of(String.format(
+                "mode %s: %d classes, %d bytes raw, %d bytes stored",
+                mode, store.size(), store.rawBytes(), store.storedBytes())));
+        return store;
+    }
+}
@@ -0,0 +1,45 @@
+package de.zonlykroks.massasmer.storage.api;
+
+/**
+ * Storage for transformed class bytes that have to be kept after the class was defined,
+ * so they can be served again when the same class is requested another time.
+ * Implementations must be safe for concurrent use.
+ */
+public interface ClassByteStore {
+    /**
+     * Stores the bytes of a class, replacing previously stored bytes.
+     *
+     * @param className The fully qualified class name
+     * @param bytes     The class bytes, must not be modified afterwards
+     */
+    void put(String className, byte[] bytes);
+
+    /**
+     * Gets the stored bytes of a class.
+     *
+     * @param className The fully qualified class name
+     * @return A copy of the stored bytes, or null if nothing is stored for the class
+     */
+    byte[] get(String className);
+
+    /**
+     * Gets the number of stored classes.
+     *
+     * @return The number of stored classes
+     */
+    int size();
+
+    /**
+     * Gets the size of all stored classes before any compression.
+     *
+     * @return The uncompressed size in bytes
+     */
+    long rawBytes();
+
+    /**
+     * Gets the memory taken by all stored classes.
+     *
+     * @return The stored size in bytes
+     */
+    long storedBytes();
+}
@@ -0,0 +1,111 @@
+package de.zonlykroks.massasmer.storage.impl;
+
+import de.zonlykroks.massasmer.storage.api.ClassByteStore;
+import de.zonlykroks.massasmer.util.UnrecoverableMassASMRuntimeError;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses class bytes with deflate before handing them to another store, and inflates them
+ * again on demand. Class files usually shrink to less than half their size.
+ */
+public class DeflateClassByteStore implements ClassByteStore {
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final ClassByteStore delegate;
+    private final AtomicLong rawBytes = new AtomicLong();
+    // Uncompressed length per class, so replacing a class does not count it twice
+    private final Map<String, Integer> rawLengths = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a compressing store.
+     *
+     * @param delegate The store keeping the compressed bytes
+     */
+    public DeflateClassByteStore(ClassByteStore delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void put(String className, byte[] bytes) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+
+        // Four byte header with the uncompressed length, so inflating needs no guessing
+        byte[] compressed = new byte[4 + bytes.length + bytes.length / 100 + 64];
+        compressed[0] = (byte) (bytes.length >>> 24);
+        compressed[1] = (byte) (bytes.length >>> 16);
+        compressed[2] = (byte) (bytes.length >>> 8);
+        compressed[3] = (byte) bytes.length;
+
+        int length = 4;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+
+        delegate.put(className, Arrays.copyOf(compressed, length));
+        Integer previous = rawLengths.put(className, bytes.length);
+        rawBytes.addAndGet(bytes.length - (previous == null ? 0 : previous));
+    }
+
+    @Override
+    public byte[] get(String className) {
+        byte[] compressed = delegate.get(className);
+        if (compressed == null) return null;
+
+        int length = ((compressed[0] & 0xFF) << 24)
+                | ((compressed[1] & 0xFF) << 16)
+                | ((compressed[2] & 0xFF) << 8)
+                | (compressed[3] & 0xFF);
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed, 4, compressed.length - 4);
+
+        byte[] bytes = new byte[length];
+        try {
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int inflated = inflater.inflate(bytes, read, length - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    // Would never make progress, the stream ended early or was written with a dictionary
+                    throw new DataFormatException("Inflated only " + read + " of " + length + " bytes");
+                }
+                read += inflated;
+            }
+            if (read < length) {
+                throw new DataFormatException("Inflated only " + read + " of " + length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new UnrecoverableMassASMRuntimeError("Corrupted retained bytes for " + className, e);
+        }
+        return bytes;
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public long rawBytes() {
+        return rawBytes.get();
+    }
+
+    @Override
+    public long storedBytes() {
+        return delegate.storedBytes();
+    }
+}
@@ -0,0 +1,43 @@
+package de.zonlykroks.massasmer.storage.impl;
+
+import de.zonlykroks.massasmer.storage.api.ClassByteStore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps class bytes as plain arrays on the heap. Fastest to serve, largest footprint.
+ */
+public class HeapClassByteStore implements ClassByteStore {
+    private final Map<String, byte[]> classes = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+
+    @Override
+    public void put(String className, byte[] classBytes) {
+        byte[] previous = classes.put(className, classBytes);
+        bytes.addAndGet(classBytes.length - (previous == null ? 0 : previous.length));
+    }
+
+    @Override
+    public byte[] get(String className) {
+        byte[] classBytes = classes.get(className);
+        // Callers own what they get, the stored array has to stay as it was put
+        return classBytes == null ? null : classBytes.clone();
+    }
+
+    @Override
+    public int size() {
+        return classes.size();
+    }
+
+    @Override
+    public long rawBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public long storedBytes() {
+        return bytes.get();
+    }
+}
@@ -0,0 +1,78 @@
+package de.zonlykroks.massasmer.storage.impl;
+
+import de.zonlykroks.massasmer.storage.api.ClassByteStore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps class bytes outside the Java heap, appended to large direct buffer chunks.
+ * Replaced entries are not reclaimed, which is fine as classes are retained once per session.
+ */
+public class OffHeapClassByteStore implements ClassByteStore {
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer current;
+    private long rawBytes;
+    private long storedBytes;
+
+    @Override
+    public void put(String className, byte[] bytes) {
+        Slot slot;
+        synchronized (this) {
+            if (current == null || current.remaining() < bytes.length) {
+                // Oversized classes get a chunk of their own
+                current = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, bytes.length));
+                chunks.add(current);
+                storedBytes += current.capacity();
+            }
+            slot = new Slot(chunks.size() - 1, current.position(), bytes.length);
+            current.put(bytes);
+            rawBytes += bytes.length;
+        }
+        Slot previous = slots.put(className, slot);
+        if (previous != null) {
+            // The replaced bytes stay in their chunk, they only stop counting as retained
+            synchronized (this) {
+                rawBytes -= previous.length();
+            }
+        }
+    }
+
+    @Override
+    public byte[] get(String className) {
+        Slot slot = slots.get(className);
+        if (slot == null) return null;
+
+        ByteBuffer chunk;
+        synchronized (this) {
+            chunk = chunks.get(slot.chunk());
+        }
+        byte[] bytes = new byte[slot.length()];
+        // Absolute bulk get does not touch the buffer position, so concurrent appends are fine
+        chunk.get(slot.offset(), bytes);
+        return bytes;
+    }
+
+    @Override
+    public int size() {
+        return slots.size();
+    }
+
+    @Override
+    public synchronized long rawBytes() {
+        return rawBytes;
+    }
+
+    @Override
+    public synchronized long storedBytes() {
+        return storedBytes;
+    }
+
+    private record Slot(int chunk, int offset, int length) {}
+}
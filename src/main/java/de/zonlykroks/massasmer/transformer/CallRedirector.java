@@ -0,0 +1,249 @@
+package de.zonlykroks.massasmer.transformer;
+
+import de.zonlykroks.massasmer.MassASMTransformer;
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.TransformerOptions;
+import de.zonlykroks.massasmer.diagnostics.StartupReport;
+import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import de.zonlykroks.massasmer.util.ClassFileInspector;
+import de.zonlykroks.massasmer.util.ClassHeaders;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import org.apache.logging.log4j.LogManager;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transformer that redirects calls to declared methods to static replacement methods, e.g.
+ * {@code Math.floor} to a faster equivalent with the same results for the values a mod uses.
+ * <p>
+ * Static calls are redirected to a replacement with the same descriptor. Virtual and interface
+ * calls are redirected to a replacement taking the receiver as its first parameter, so
+ * {@code com/x/Vec.length()D} becomes {@code Replacement.length(Lcom/x/Vec;)D}. Either way the
+ * stack keeps its shape and no frames have to be recomputed. Constructor and super calls, and
+ * method references in lambdas, are never redirected.
+ * <p>
+ * All redirects are applied by a single visitor. Before reading a class, its constant pool is
+ * scanned for method references to a redirected method, and classes without any are returned
+ * unchanged without being parsed. Declarations are global: every registered redirector sees all
+ * of them, they only differ in the classes they are applied to.
+ */
+public class CallRedirector {
+    private static final LoggerWrapper LOGGER = new LoggerWrapper(LogManager.getLogger("MassASM-CallRedirector"), MassasmerPreLaunch.configManager.isLogEnabled());
+
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+
+    private static final TransformerOptions OPTIONS = TransformerOptions.builder()
+            .expandFrames(false)
+            .changesStackShape(false)
+            .build();
+
+    // Keyed by "owner.name(desc)", owner in internal form
+    private static final Map<String, Redirect> REDIRECTS = new ConcurrentHashMap<>();
+    // Redirected owners, and the replacement owners which must keep calling the original
+    private static final Set<String> OWNERS = ConcurrentHashMap.newKeySet();
+    private static final Set<String> REPLACEMENT_OWNERS = ConcurrentHashMap.newKeySet();
+    // Keyed by "owner.name(desc) static|virtual", empty if the replacement does not exist
+    private static final Map<String, Optional<Replacement>> REPLACEMENTS = new ConcurrentHashMap<>();
+
+    private static final Map<String, LongAdder> REDIRECTED = new ConcurrentHashMap<>();
+    private static final LongAdder SCANNED_CLASSES = new LongAdder();
+    private static final LongAdder SKIPPED_CLASSES = new LongAdder();
+
+    private CallRedirector() {}
+
+    private record Redirect(String owner, String name) {}
+
+    private record Replacement(String owner, String name, String desc, boolean itf) {}
+
+    /**
+     * Declares a redirect.
+     *
+     * @param className       The fully qualified name of the class declaring the redirected method
+     * @param methodName      The redirected method name
+     * @param descriptor      The redirected method descriptor, for example {@code (D)D}
+     * @param targetClassName The fully qualified name of the class declaring the replacement
+     * @param targetMethod    The name of the static replacement method
+     */
+    public static void redirect(String className, String methodName, String descriptor, String targetClassName, String targetMethod) {
+        if (methodName.startsWith("<")) {
+            throw new IllegalArgumentException("Constructors and initializers cannot be redirected: " + methodName);
+        }
+        // Rejects malformed descriptors right away
+        Type.getMethodType(descriptor);
+
+        String owner = className.replace('.', '/');
+        String targetOwner = targetClassName.replace('.', '/');
+        REDIRECTS.put(owner + "." + methodName + descriptor, new Redirect(targetOwner, targetMethod));
+        OWNERS.add(owner);
+        REPLACEMENT_OWNERS.add(targetOwner);
+    }
+
+    /**
+     * Parses a declaration of the form {@code java.lang.Math#floor(D)D=com.example.FastMath#floor},
+     * as used in {@code massasm.properties}.
+     *
+     * @param declaration The declaration to parse
+     * @throws IllegalArgumentException if the declaration is malformed
+     */
+    public static void declare(String declaration) {
+        int hash = declaration.indexOf('#');
+        int paren = declaration.indexOf('(', hash + 1);
+        int equals = declaration.indexOf('=', paren + 1);
+        int targetHash = declaration.indexOf('#', equals + 1);
+        if (hash <= 0 || paren < 0 || equals < 0 || targetHash < 0) {
+            throw new IllegalArgumentException("Malformed redirect declaration: " + declaration);
+        }
+
+        String targetMethod = declaration.substring(targetHash + 1).trim();
+        if (targetMethod.isEmpty()) {
+            throw new IllegalArgumentException("Malformed redirect declaration: " + declaration);
+        }
+        try {
+            redirect(declaration.substring(0, hash).trim(),
+                    declaration.substring(hash + 1, paren).trim(),
+                    declaration.substring(paren, equals).trim(),
+                    declaration.substring(equals + 1, targetHash).trim(),
+                    targetMethod);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed redirect declaration: " + declaration, e);
+        }
+    }
+
+    /**
+     * Registers a call redirector for the given classes.
+     *
+     * @param name   Unique transformer name
+     * @param filter Classes in which calls should be redirected
+     */
+    public static void register(String name, TransformerFilter filter) {
+        StartupReport.registerSection("Call redirection", CallRedirector::reportLines);
+        MassASMTransformer.ClassTransformer pass = MassASMTransformer.visitorPass(RedirectingVisitor::new, OPTIONS);
+        MassASMTransformer.register(name, filter, OPTIONS, (className, classBytes) -> {
+            SCANNED_CLASSES.increment();
+            if (!referencesRedirectedMethod(classBytes)) {
+                SKIPPED_CLASSES.increment();
+                return null;
+            }
+            return pass.transform(className, classBytes);
+        });
+    }
+
+    private static boolean referencesRedirectedMethod(byte[] classBytes) {
+        if (REDIRECTS.isEmpty()) return false;
+
+        ClassFileInspector inspector = ClassFileInspector.of(classBytes);
+        // A replacement calls the method it replaces for the values it does not handle itself
+        if (REPLACEMENT_OWNERS.contains(inspector.className())) return false;
+
+        for (int i = 1; i < inspector.constantPoolCount(); i++) {
+            int tag = inspector.tag(i);
+            if (tag != CONSTANT_METHODREF && tag != CONSTANT_INTERFACE_METHODREF) continue;
+
+            int offset = inspector.constantOffset(i);
+            String owner = inspector.classNameAt(inspector.readUnsignedShort(offset + 1));
+            if (!OWNERS.contains(owner)) continue;
+
+            int nameAndType = inspector.constantOffset(inspector.readUnsignedShort(offset + 3));
+            String name = inspector.utf8(inspector.readUnsignedShort(nameAndType + 1));
+            String desc = inspector.utf8(inspector.readUnsignedShort(nameAndType + 3));
+            if (REDIRECTS.containsKey(owner + "." + name + desc)) return true;
+        }
+        return false;
+    }
+
+    private static Replacement replacementFor(int opcode, String owner, String name, String desc, String callerName) {
+        if (opcode == Opcodes.INVOKESPECIAL) return null;
+
+        String key = owner + "." + name + desc;
+        Redirect redirect = REDIRECTS.get(key);
+        if (redirect == null) return null;
+
+        boolean isStatic = opcode == Opcodes.INVOKESTATIC;
+        Replacement replacement = REPLACEMENTS.computeIfAbsent(key + (isStatic ? " static" : " virtual"), k -> {
+            String replacementDesc = isStatic ? desc : "(" + Type.getObjectType(owner).getDescriptor() + desc.substring(1);
+            Optional<Replacement> resolved = resolve(redirect, replacementDesc);
+            if (resolved.isEmpty()) {
+                LOGGER.error("Not redirecting {}: {}.{}{} is not a static method", key, redirect.owner(), redirect.name(), replacementDesc);
+            }
+            return resolved;
+        }).orElse(null);
+
+        if (replacement == null) return null;
+        if (!ClassHeaders.isTypeAccessible(replacement.owner(), callerName)) return null;
+        if (!ClassHeaders.isMemberAccessible(replacement.owner(), replacement.name(), replacement.desc(), false, callerName)) return null;
+        return replacement;
+    }
+
+    private static Optional<Replacement> resolve(Redirect redirect, String desc) {
+        ClassHeaders.ResolvedMember member = ClassHeaders.resolve(redirect.owner(), redirect.name(), desc, false);
+        if (member == null || (member.access() & Opcodes.ACC_STATIC) == 0) return Optional.empty();
+
+        ClassNode declaring = ClassHeaders.header(member.owner());
+        boolean itf = declaring != null && (declaring.access & Opcodes.ACC_INTERFACE) != 0;
+        return Optional.of(new Replacement(member.owner(), redirect.name(), desc, itf));
+    }
+
+    private static List<String> reportLines() {
+        List<String> lines = new ArrayList<>();
+        long total = 0;
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(REDIRECTED).entrySet()) {
+            lines.add(entry.getKey() + ": " + entry.getValue().sum() + " call sites");
+            total += entry.getValue().sum();
+        }
+        lines.add("Total: " + total + " redirected calls");
+        lines.add("Classes scanned: " + SCANNED_CLASSES.sum() + ", skipped by the constant pool prescan: " + SKIPPED_CLASSES.sum());
+        return lines;
+    }
+
+    private static class RedirectingVisitor extends ClassVisitor {
+        private final String className;
+        private String internalName;
+        private int redirected = 0;
+
+        RedirectingVisitor(String className, ClassVisitor next) {
+            super(Opcodes.ASM9, next);
+            this.className = className;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.internalName = name;
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            return new MethodVisitor(api, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String methodName, String methodDesc, boolean isInterface) {
+                    Replacement replacement = replacementFor(opcode, owner, methodName, methodDesc, internalName);
+                    if (replacement == null) {
+                        super.visitMethodInsn(opcode, owner, methodName, methodDesc, isInterface);
+                        return;
+                    }
+
+                    super.visitMethodInsn(Opcodes.INVOKESTATIC, replacement.owner(), replacement.name(), replacement.desc(), replacement.itf());
+                    REDIRECTED.computeIfAbsent(owner + "." + methodName + methodDesc + " -> " + replacement.owner() + "." + replacement.name(),
+                            k -> new LongAdder()).increment();
+                    redirected++;
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            if (redirected > 0) {
+                LOGGER.info("Redirected {} call(s) in {}", redirected, className);
+            }
+            super.visitEnd();
+        }
+    }
+}
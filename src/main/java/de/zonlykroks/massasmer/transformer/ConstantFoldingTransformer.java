@@ -0,0 +1,252 @@
+package de.zonlykroks.massasmer.transformer;
+
+import de.zonlykroks.massasmer.MassASMTransformer;
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import de.zonlykroks.massasmer.util.ClassHeaders;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import org.apache.logging.log4j.LogManager;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node transformer that treats declared static fields and no-argument static methods as
+ * compile-time constants. Reads of them are replaced by the constant value and branches
+ * depending on them are folded, after which {@link DeadBranchEliminator} removes the dead code.
+ * <p>
+ * A read initializes the declaring class first. Unless that class only assigns constants in its
+ * initializer, reads are therefore only folded in the class itself and its subclasses, where it
+ * is already initialized.
+ * <p>
+ * Declarations are global: every registered constant folding transformer sees all of them,
+ * they only differ in the classes they are applied to.
+ */
+public class ConstantFoldingTransformer implements MassASMTransformer.ClassNodeTransformer {
+    private static final LoggerWrapper LOGGER = new LoggerWrapper(LogManager.getLogger("MassASM-ConstantFolding"), MassasmerPreLaunch.configManager.isLogEnabled());
+
+    // Keyed by "owner.name" for fields and "owner.name(desc)" for methods, owner in internal form
+    private static final Map<String, Object> CONSTANTS = new ConcurrentHashMap<>();
+    // Whether initializing a declaring class has visible effects, by internal name
+    private static final Map<String, Boolean> INITIALIZERS = new ConcurrentHashMap<>();
+
+    /**
+     * Declares a static field as constant.
+     *
+     * @param className The fully qualified name of the declaring class
+     * @param fieldName The field name
+     * @param value     The value the field always has, a boxed primitive or a String
+     */
+    public static void declareField(String className, String fieldName, Object value) {
+        CONSTANTS.put(className.replace('.', '/') + "." + fieldName, checkValue(value));
+    }
+
+    /**
+     * Declares a static method without arguments as constant.
+     *
+     * @param className  The fully qualified name of the declaring class
+     * @param methodName The method name
+     * @param descriptor The method descriptor, for example {@code ()Z}
+     * @param value      The value the method always returns, a boxed primitive or a String
+     */
+    public static void declareMethod(String className, String methodName, String descriptor, Object value) {
+        if (!descriptor.startsWith("()")) {
+            throw new IllegalArgumentException("Only methods without arguments can be constant: " + methodName + descriptor);
+        }
+        CONSTANTS.put(className.replace('.', '/') + "." + methodName + descriptor, checkValue(value));
+    }
+
+    /**
+     * Parses a declaration of the form {@code com.example.Config#DEBUG=false} or
+     * {@code com.example.Mod#isClient()Z=true}, as used in {@code massasm.properties}.
+     *
+     * @param declaration The declaration to parse
+     * @throws IllegalArgumentException if the declaration is malformed
+     */
+    public static void declare(String declaration) {
+        int hash = declaration.indexOf('#');
+        int equals = declaration.indexOf('=', hash + 1);
+        if (hash <= 0 || equals < 0) {
+            throw new IllegalArgumentException("Malformed constant declaration: " + declaration);
+        }
+
+        String className = declaration.substring(0, hash).trim();
+        String member = declaration.substring(hash + 1, equals).trim();
+        Object value = parseValue(declaration.substring(equals + 1).trim());
+
+        int paren = member.indexOf('(');
+        if (paren >= 0) {
+            declareMethod(className, member.substring(0, paren), member.substring(paren), value);
+        } else {
+            declareField(className, member, value);
+        }
+    }
+
+    /**
+     * Registers a constant folding transformer for the given classes.
+     *
+     * @param name   Unique transformer name
+     * @param filter Classes in which constant reads should be folded
+     */
+    public static void register(String name, TransformerFilter filter) {
+        MassASMTransformer.registerNodeTransformer(name, filter, new ConstantFoldingTransformer());
+    }
+
+    @Override
+    public boolean transform(String className, ClassNode classNode) {
+        if (CONSTANTS.isEmpty()) return false;
+
+        int inlined = 0;
+        boolean modified = false;
+        for (MethodNode method : classNode.methods) {
+            // The declaring class initializer is where the value is computed, leave it alone
+            if (method.name.equals("<clinit>") && declaresConstants(classNode.name)) continue;
+
+            int methodInlined = inlineConstants(classNode, method.instructions);
+            if (methodInlined > 0) {
+                inlined += methodInlined;
+                DeadBranchEliminator.run(method);
+                modified = true;
+            }
+        }
+
+        if (modified) {
+            LOGGER.info("Inlined {} constant read(s) in {}", inlined, className);
+        }
+        return modified;
+    }
+
+    private int inlineConstants(ClassNode caller, InsnList insns) {
+        int inlined = 0;
+        for (AbstractInsnNode insn = insns.getFirst(); insn != null; ) {
+            AbstractInsnNode next = insn.getNext();
+
+            Object value = null;
+            Type type = null;
+            String owner = null;
+            if (insn instanceof FieldInsnNode field && field.getOpcode() == Opcodes.GETSTATIC) {
+                value = CONSTANTS.get(field.owner + "." + field.name);
+                type = Type.getType(field.desc);
+                owner = field.owner;
+            } else if (insn instanceof MethodInsnNode call && call.getOpcode() == Opcodes.INVOKESTATIC) {
+                value = CONSTANTS.get(call.owner + "." + call.name + call.desc);
+                type = Type.getReturnType(call.desc);
+                owner = call.owner;
+            }
+
+            if (value != null && !skipsInitialization(caller, owner)) {
+                AbstractInsnNode push = pushConstant(type, value);
+                if (push != null) {
+                    insns.set(insn, push);
+                    inlined++;
+                }
+            }
+            insn = next;
+        }
+        return inlined;
+    }
+
+    private static AbstractInsnNode pushConstant(Type type, Object value) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN, Type.BYTE, Type.CHAR, Type.SHORT, Type.INT -> {
+                int intValue;
+                if (value instanceof Boolean bool) {
+                    intValue = bool ? 1 : 0;
+                } else if (value instanceof Number number) {
+                    intValue = number.intValue();
+                } else {
+                    return null;
+                }
+                return pushInt(intValue);
+            }
+            case Type.LONG -> {
+                return value instanceof Number number ? new LdcInsnNode(number.longValue()) : null;
+            }
+            case Type.FLOAT -> {
+                return value instanceof Number number ? new LdcInsnNode(number.floatValue()) : null;
+            }
+            case Type.DOUBLE -> {
+                return value instanceof Number number ? new LdcInsnNode(number.doubleValue()) : null;
+            }
+            case Type.OBJECT -> {
+                return value instanceof String && type.getInternalName().equals("java/lang/String")
+                        ? new LdcInsnNode(value)
+                        : null;
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private static AbstractInsnNode pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            return new InsnNode(Opcodes.ICONST_0 + value);
+        }
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return new IntInsnNode(Opcodes.BIPUSH, value);
+        }
+        if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            return new IntInsnNode(Opcodes.SIPUSH, value);
+        }
+        return new LdcInsnNode(value);
+    }
+
+    private static boolean skipsInitialization(ClassNode caller, String owner) {
+        return !ClassHeaders.isSubclassOrSelf(caller, owner)
+                && INITIALIZERS.computeIfAbsent(owner, ConstantFoldingTransformer::hasInitializer);
+    }
+
+    private static boolean hasInitializer(String owner) {
+        byte[] bytes = ClassHeaders.readClass(owner);
+        boolean initializer = true;
+        if (bytes != null) {
+            ClassNode classNode = new ClassNode();
+            new ClassReader(bytes).accept(classNode, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            initializer = ClassHeaders.hasInitializer(classNode);
+        }
+        if (initializer) {
+            LOGGER.warn("Folding constants of {} only inside its hierarchy, its class initializer does more than assign constants", owner);
+        }
+        return initializer;
+    }
+
+    private static boolean declaresConstants(String internalName) {
+        String prefix = internalName + ".";
+        for (String key : CONSTANTS.keySet()) {
+            if (key.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    private static Object parseValue(String raw) {
+        if (raw.equalsIgnoreCase("true") || raw.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(raw);
+        }
+        if (raw.length() >= 2 && raw.startsWith("\"") && raw.endsWith("\"")) {
+            return raw.substring(1, raw.length() - 1);
+        }
+        try {
+            if (raw.endsWith("L") || raw.endsWith("l")) {
+                return Long.parseLong(raw.substring(0, raw.length() - 1));
+            }
+            if (raw.contains(".")) {
+                return Double.parseDouble(raw);
+            }
+            return Integer.parseInt(raw);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unsupported constant value: " + raw, e);
+        }
+    }
+
+    private static Object checkValue(Object value) {
+        if (!(value instanceof Boolean || value instanceof Number || value instanceof String)) {
+            throw new IllegalArgumentException("Constant values must be booleans, numbers or strings, got " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,245 @@
+package de.zonlykroks.massasmer.transformer;
+
+import de.zonlykroks.massasmer.util.InsnUtils;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+
+import java.util.*;
+
+/**
+ * Basic-block level clean-up for {@link MethodNode}s: folds conditional jumps on constant
+ * operands, removes code that became unreachable and drops jumps to the directly following label.
+ * Frames are expected to be recomputed by the class writer afterwards.
+ */
+public final class DeadBranchEliminator {
+    private DeadBranchEliminator() {}
+
+    /**
+     * Runs all passes on the given method.
+     *
+     * @param method The method to simplify
+     * @return true if the instruction list was changed
+     */
+    public static boolean run(MethodNode method) {
+        boolean modified = foldConstantBranches(method.instructions);
+        if (modified) {
+            removeUnreachableCode(method);
+            removeRedundantGotos(method.instructions);
+        }
+        return modified;
+    }
+
+    /**
+     * Replaces conditional jumps whose operands are constant pushes by either an
+     * unconditional jump or nothing.
+     *
+     * @param insns The instructions to fold
+     * @return true if any jump was folded
+     */
+    public static boolean foldConstantBranches(InsnList insns) {
+        boolean modified = false;
+
+        for (AbstractInsnNode insn = insns.getFirst(); insn != null; ) {
+            AbstractInsnNode next = insn.getNext();
+            if (insn instanceof JumpInsnNode jump) {
+                Boolean taken = evaluate(jump);
+                if (taken != null) {
+                    removeOperands(insns, jump);
+                    if (taken) {
+                        insns.set(jump, new JumpInsnNode(Opcodes.GOTO, jump.label));
+                    } else {
+                        insns.remove(jump);
+                    }
+                    modified = true;
+                }
+            }
+            insn = next;
+        }
+        return modified;
+    }
+
+    /**
+     * Removes every instruction that cannot be reached from the method entry or a reachable
+     * exception handler, along with exception table entries that no longer cover any code.
+     *
+     * @param method The method to clean up
+     * @return true if anything was removed
+     */
+    public static boolean removeUnreachableCode(MethodNode method) {
+        InsnList insns = method.instructions;
+        if (insns.size() == 0) return false;
+
+        boolean[] reachable = computeReachability(method);
+        AbstractInsnNode[] array = insns.toArray();
+
+        boolean modified = false;
+        for (int i = 0; i < array.length; i++) {
+            AbstractInsnNode insn = array[i];
+            if (!reachable[i] && (insn.getOpcode() >= 0 || insn instanceof FrameNode)) {
+                insns.remove(insn);
+                modified = true;
+            }
+        }
+
+        if (modified) {
+            method.tryCatchBlocks.removeIf(block -> !coversCode(block));
+        }
+        return modified;
+    }
+
+    /**
+     * Removes {@code GOTO}s that jump to the label directly following them.
+     *
+     * @param insns The instructions to clean up
+     * @return true if any jump was removed
+     */
+    public static boolean removeRedundantGotos(InsnList insns) {
+        boolean modified = false;
+        for (AbstractInsnNode insn = insns.getFirst(); insn != null; ) {
+            AbstractInsnNode next = insn.getNext();
+            if (insn.getOpcode() == Opcodes.GOTO && fallsThroughTo(insn, ((JumpInsnNode) insn).label)) {
+                insns.remove(insn);
+                modified = true;
+            }
+            insn = next;
+        }
+        return modified;
+    }
+
+    private static boolean[] computeReachability(MethodNode method) {
+        InsnList insns = method.instructions;
+        boolean[] reachable = new boolean[insns.size()];
+        Deque<Integer> worklist = new ArrayDeque<>();
+        worklist.push(0);
+
+        boolean changed = true;
+        while (changed) {
+            while (!worklist.isEmpty()) {
+                int index = worklist.pop();
+                if (index >= reachable.length || reachable[index]) continue;
+                reachable[index] = true;
+
+                AbstractInsnNode insn = insns.get(index);
+                for (LabelNode target : InsnUtils.targetsOf(insn)) {
+                    worklist.push(insns.indexOf(target));
+                }
+                if (!endsBlock(insn)) {
+                    worklist.push(index + 1);
+                }
+            }
+
+            // Handlers are reachable once any instruction they protect is
+            changed = false;
+            for (TryCatchBlockNode block : method.tryCatchBlocks) {
+                int handler = insns.indexOf(block.handler);
+                if (reachable[handler]) continue;
+                for (int i = insns.indexOf(block.start); i < insns.indexOf(block.end); i++) {
+                    if (reachable[i]) {
+                        worklist.push(handler);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return reachable;
+    }
+
+    private static Boolean evaluate(JumpInsnNode jump) {
+        int opcode = jump.getOpcode();
+        if (opcode >= Opcodes.IFEQ && opcode <= Opcodes.IFLE) {
+            AbstractInsnNode operand = previousInBlock(jump);
+            Integer value = intConstant(operand);
+            if (value == null) return null;
+            return switch (opcode) {
+                case Opcodes.IFEQ -> value == 0;
+                case Opcodes.IFNE -> value != 0;
+                case Opcodes.IFLT -> value < 0;
+                case Opcodes.IFGE -> value >= 0;
+                case Opcodes.IFGT -> value > 0;
+                default -> value <= 0;
+            };
+        }
+        if (opcode >= Opcodes.IF_ICMPEQ && opcode <= Opcodes.IF_ICMPLE) {
+            AbstractInsnNode rightNode = previousInBlock(jump);
+            AbstractInsnNode leftNode = rightNode == null ? null : previousInBlock(rightNode);
+            Integer right = intConstant(rightNode);
+            Integer left = intConstant(leftNode);
+            if (left == null || right == null) return null;
+            return switch (opcode) {
+                case Opcodes.IF_ICMPEQ -> left.intValue() == right.intValue();
+                case Opcodes.IF_ICMPNE -> left.intValue() != right.intValue();
+                case Opcodes.IF_ICMPLT -> left < right;
+                case Opcodes.IF_ICMPGE -> left >= right;
+                case Opcodes.IF_ICMPGT -> left > right;
+                default -> left <= right;
+            };
+        }
+        return null;
+    }
+
+    private static void removeOperands(InsnList insns, JumpInsnNode jump) {
+        int operands = jump.getOpcode() >= Opcodes.IF_ICMPEQ ? 2 : 1;
+        for (int i = 0; i < operands; i++) {
+            insns.remove(previousInBlock(jump));
+        }
+    }
+
+    /**
+     * Gets the previous real instruction, or null if a label lies in between, as another
+     * path could then reach the jump with a different operand.
+     */
+    private static AbstractInsnNode previousInBlock(AbstractInsnNode insn) {
+        for (AbstractInsnNode prev = insn.getPrevious(); prev != null; prev = prev.getPrevious()) {
+            if (prev instanceof LabelNode) return null;
+            if (prev.getOpcode() >= 0) return prev;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the value pushed by an int constant instruction.
+     *
+     * @param insn The instruction to inspect, may be null
+     * @return The pushed value, or null if the instruction is not an int constant push
+     */
+    public static Integer intConstant(AbstractInsnNode insn) {
+        if (insn == null) return null;
+        int opcode = insn.getOpcode();
+        if (opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5) {
+            return opcode - Opcodes.ICONST_0;
+        }
+        if (opcode == Opcodes.BIPUSH || opcode == Opcodes.SIPUSH) {
+            return ((IntInsnNode) insn).operand;
+        }
+        if (insn instanceof LdcInsnNode ldc && ldc.cst instanceof Integer value) {
+            return value;
+        }
+        return null;
+    }
+
+    private static boolean fallsThroughTo(AbstractInsnNode insn, LabelNode label) {
+        for (AbstractInsnNode next = insn.getNext(); next != null; next = next.getNext()) {
+            if (next == label) return true;
+            if (next.getOpcode() >= 0) return false;
+        }
+        return false;
+    }
+
+    private static boolean coversCode(TryCatchBlockNode block) {
+        for (AbstractInsnNode insn = block.start; insn != null && insn != block.end; insn = insn.getNext()) {
+            if (insn.getOpcode() >= 0) return true;
+        }
+        return false;
+    }
+
+    private static boolean endsBlock(AbstractInsnNode insn) {
+        int opcode = insn.getOpcode();
+        return opcode == Opcodes.GOTO
+                || opcode == Opcodes.ATHROW
+                || opcode == Opcodes.RET
+                || opcode == Opcodes.TABLESWITCH
+                || opcode == Opcodes.LOOKUPSWITCH
+                || (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN);
+    }
+}
@@ -0,0 +1,156 @@
+package de.zonlykroks.massasmer.transformer;
+
+import de.zonlykroks.massasmer.MassASMTransformer;
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.TransformerOptions;
+import de.zonlykroks.massasmer.diagnostics.StartupReport;
+import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import org.apache.logging.log4j.LogManager;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transformer that removes debug information classes do not need at runtime: local variable
+ * tables, source debug extensions and parameter names. Line numbers and the source file name
+ * can be kept, so stack traces stay readable.
+ * <p>
+ * The class is written with a fresh constant pool, so the names only the removed attributes
+ * referenced are dropped as well. This is why the stripper runs in its own pass instead of
+ * being fused with visitors, which copy the constant pool. It runs after all other
+ * transformers by default, so they still see the debug information.
+ */
+public class DebugInfoStripper implements MassASMTransformer.ClassTransformer {
+    private static final LoggerWrapper LOGGER = new LoggerWrapper(LogManager.getLogger("MassASM-DebugStripper"), MassasmerPreLaunch.configManager.isLogEnabled());
+
+    // Keyed by package in internal form, "" for the default package
+    private static final Map<String, PackageStats> STATS = new ConcurrentHashMap<>();
+
+    private final boolean keepLineNumbers;
+
+    private static final class PackageStats {
+        final LongAdder classes = new LongAdder();
+        final LongAdder bytesBefore = new LongAdder();
+        final LongAdder bytesSaved = new LongAdder();
+    }
+
+    /**
+     * Creates a new stripper.
+     *
+     * @param keepLineNumbers Whether line numbers and the source file name are kept
+     */
+    public DebugInfoStripper(boolean keepLineNumbers) {
+        this.keepLineNumbers = keepLineNumbers;
+    }
+
+    /**
+     * Registers a debug info stripper for the given classes, running after all other transformers.
+     *
+     * @param name            Unique transformer name
+     * @param filter          Classes to strip
+     * @param keepLineNumbers Whether line numbers and the source file name are kept
+     */
+    public static void register(String name, TransformerFilter filter, boolean keepLineNumbers) {
+        register(name, filter, keepLineNumbers, TransformerOptions.builder().priority(Integer.MAX_VALUE).build());
+    }
+
+    /**
+     * Registers a debug info stripper for the given classes with custom options, e.g. to order it
+     * before a transformer that does not need debug information.
+     *
+     * @param name            Unique transformer name
+     * @param filter          Classes to strip
+     * @param keepLineNumbers Whether line numbers and the source file name are kept
+     * @param options         The ordering options
+     */
+    public static void register(String name, TransformerFilter filter, boolean keepLineNumbers, TransformerOptions options) {
+        StartupReport.registerSection("Debug info stripping", DebugInfoStripper::reportLines);
+        MassASMTransformer.register(name, filter, options, new DebugInfoStripper(keepLineNumbers));
+    }
+
+    @Override
+    public byte[] transform(String className, byte[] classBytes) {
+        ClassReader reader = new ClassReader(classBytes);
+        // Not created from the reader, the constant pool is rebuilt from what is still referenced
+        ClassWriter writer = new ClassWriter(0);
+
+        if (keepLineNumbers) {
+            reader.accept(new StrippingVisitor(writer), 0);
+        } else {
+            // Skips line numbers, the source file and everything the visitor would remove
+            reader.accept(writer, ClassReader.SKIP_DEBUG);
+        }
+
+        byte[] stripped = writer.toByteArray();
+        int saved = classBytes.length - stripped.length;
+        if (saved <= 0) return null;
+
+        PackageStats stats = STATS.computeIfAbsent(packageOf(reader.getClassName()), k -> new PackageStats());
+        stats.classes.increment();
+        stats.bytesBefore.add(classBytes.length);
+        stats.bytesSaved.add(saved);
+
+        LOGGER.info("Stripped {} bytes of debug info from {}", saved, className);
+        return stripped;
+    }
+
+    private static String packageOf(String internalName) {
+        int slash = internalName.lastIndexOf('/');
+        return slash < 0 ? "" : internalName.substring(0, slash);
+    }
+
+    private static List<String> reportLines() {
+        List<String> lines = new ArrayList<>();
+        long classes = 0;
+        long before = 0;
+        long saved = 0;
+        for (Map.Entry<String, PackageStats> entry : new TreeMap<>(STATS).entrySet()) {
+            PackageStats stats = entry.getValue();
+            lines.add(String.format("%s: %d classes, %d of %d bytes saved",
+                    entry.getKey().isEmpty() ? "(default package)" : entry.getKey().replace('/', '.'),
+                    stats.classes.sum(), stats.bytesSaved.sum(), stats.bytesBefore.sum()));
+            classes += stats.classes.sum();
+            before += stats.bytesBefore.sum();
+            saved += stats.bytesSaved.sum();
+        }
+        lines.add(String.format("Total: %d classes, %d of %d bytes saved (%.1f%%)",
+                classes, saved, before, before == 0 ? 0.0 : saved * 100.0 / before));
+        return lines;
+    }
+
+    // Keeps the SourceFile attribute and line numbers, drops everything else SKIP_DEBUG would
+    private static class StrippingVisitor extends ClassVisitor {
+        StrippingVisitor(ClassVisitor next) {
+            super(Opcodes.ASM9, next);
+        }
+
+        @Override
+        public void visitSource(String source, String debug) {
+            super.visitSource(source, null);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            return new MethodVisitor(api, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+                @Override
+                public void visitParameter(String parameterName, int parameterAccess) {
+                }
+
+                @Override
+                public void visitLocalVariable(String localName, String localDescriptor, String localSignature, Label start, Label end, int index) {
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package de.zonlykroks.massasmer.transformer;
+
+import de.zonlykroks.massasmer.MassASMTransformer;
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.diagnostics.StartupReport;
+import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import de.zonlykroks.massasmer.util.ClassHeaders;
+import de.zonlykroks.massasmer.util.ClassHierarchyIndex;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import org.apache.logging.log4j.LogManager;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node transformer that turns interface and virtual calls into direct calls when the game and
+ * mod jars contain a single concrete implementation of the receiver type, and it is final.
+ * <p>
+ * The closed world can be wrong at runtime: lambdas, proxies and supertypes added by other
+ * transformers are not in the jars. Every rewritten call is therefore guarded:
+ * <pre>
+ * receiver instanceof Impl ? ((Impl) receiver).m(args) : receiver.m(args)
+ * </pre>
+ * The {@code instanceof} against a final class is a single type comparison, and the direct call
+ * on the final class can be inlined by the JIT without waiting for class hierarchy analysis.
+ * Calls that would push a method past the JIT's huge method limit are left alone, and so are the
+ * fallback calls of guards inserted before, so overlapping registrations do not nest guards.
+ */
+public class Devirtualizer implements MassASMTransformer.ClassNodeTransformer {
+    private static final LoggerWrapper LOGGER = new LoggerWrapper(LogManager.getLogger("MassASM-Devirtualizer"), MassasmerPreLaunch.configManager.isLogEnabled());
+
+    // Keyed by "owner.name(desc) -> implementation"
+    private static final Map<String, LongAdder> REWRITTEN = new ConcurrentHashMap<>();
+    private static final LongAdder CAPPED_SITES = new LongAdder();
+
+    private final int hugeMethodLimit;
+
+    /**
+     * Creates a new devirtualizer.
+     */
+    public Devirtualizer() {
+        this.hugeMethodLimit = MassasmerPreLaunch.configManager.getJitHugeMethodLimit();
+    }
+
+    /**
+     * Registers a devirtualizer for the given classes and requests the class hierarchy index.
+     *
+     * @param name   Unique transformer name
+     * @param filter Classes in which calls should be devirtualized
+     */
+    public static void register(String name, TransformerFilter filter) {
+        ClassHierarchyIndex.request();
+        StartupReport.registerSection("Devirtualization", Devirtualizer::reportLines);
+        MassASMTransformer.registerNodeTransformer(name, filter, new Devirtualizer());
+    }
+
+    @Override
+    public boolean transform(String className, ClassNode classNode) {
+        int rewritten = 0;
+        for (MethodNode method : classNode.methods) {
+            if (method.instructions.size() == 0) continue;
+
+            // Every guard parks its arguments in the same scratch locals above the method's own
+            int scratch = method.maxLocals;
+            int scratchSize = 0;
+            int size = SmallMethodInliner.estimateSize(method.instructions);
+            for (AbstractInsnNode insn : method.instructions.toArray()) {
+                if (!(insn instanceof MethodInsnNode call)) continue;
+                if (call.getOpcode() != Opcodes.INVOKEINTERFACE && call.getOpcode() != Opcodes.INVOKEVIRTUAL) continue;
+                if (call.owner.startsWith("[")) continue;
+                if (isGuardFallback(call)) continue;
+
+                String implementation = implementationFor(call, classNode.name);
+                if (implementation == null) continue;
+
+                InsnList guard = guard(call, implementation, scratch);
+                int added = SmallMethodInliner.estimateSize(guard) - (call.getOpcode() == Opcodes.INVOKEINTERFACE ? 5 : 3);
+                // A method past the limit is never compiled, which costs more than a virtual call
+                if (size + added > hugeMethodLimit) {
+                    CAPPED_SITES.increment();
+                    continue;
+                }
+
+                method.instructions.insert(call, guard);
+                method.instructions.remove(call);
+                size += added;
+                scratchSize = Math.max(scratchSize, argumentSize(call.desc));
+                REWRITTEN.computeIfAbsent(call.owner + "." + call.name + call.desc + " -> " + implementation, k -> new LongAdder()).increment();
+                rewritten++;
+            }
+            method.maxLocals = scratch + scratchSize;
+        }
+
+        if (rewritten > 0) {
+            LOGGER.info("Devirtualized {} call(s) in {}", rewritten, className);
+        }
+        return rewritten > 0;
+    }
+
+    private static String implementationFor(MethodInsnNode call, String callerName) {
+        String implementation = ClassHierarchyIndex.singleFinalImplementation(call.owner);
+        // A final owner is already dispatched directly
+        if (implementation == null || implementation.equals(call.owner)) return null;
+        if (!ClassHeaders.isTypeAccessible(implementation, callerName)) return null;
+
+        // The direct call must select the same method the original call would have
+        ClassHeaders.ResolvedMember target = ClassHeaders.resolve(implementation, call.name, call.desc, false);
+        if (target == null || (target.access() & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_STATIC)) != 0) return null;
+        if (!ClassHeaders.isMemberAccessible(implementation, call.name, call.desc, false, callerName)) return null;
+        return implementation;
+    }
+
+    // Detects the fallback call of a guard inserted before, e.g. by an overlapping registration:
+    // it follows its argument loads, the fallback label, and "GOTO end" after the direct call
+    private static boolean isGuardFallback(MethodInsnNode call) {
+        AbstractInsnNode insn = call;
+        for (int i = Type.getArgumentTypes(call.desc).length; i > 0; i--) {
+            insn = previousInstruction(insn);
+            if (!(insn instanceof VarInsnNode)) return false;
+        }
+
+        insn = insn.getPrevious();
+        while (insn instanceof FrameNode || insn instanceof LineNumberNode) {
+            insn = insn.getPrevious();
+        }
+        if (!(insn instanceof LabelNode)) return false;
+
+        insn = previousInstruction(insn);
+        if (insn == null || insn.getOpcode() != Opcodes.GOTO) return false;
+        insn = previousInstruction(insn);
+        return insn instanceof MethodInsnNode direct
+                && direct.getOpcode() == Opcodes.INVOKEVIRTUAL
+                && direct.name.equals(call.name)
+                && direct.desc.equals(call.desc)
+                && !direct.owner.equals(call.owner);
+    }
+
+    private static AbstractInsnNode previousInstruction(AbstractInsnNode insn) {
+        AbstractInsnNode previous = insn.getPrevious();
+        while (previous != null && previous.getOpcode() < 0) {
+            previous = previous.getPrevious();
+        }
+        return previous;
+    }
+
+    private static int argumentSize(String desc) {
+        // Includes the receiver, which is not parked
+        return (Type.getArgumentsAndReturnSizes(desc) >> 2) - 1;
+    }
+
+    private static InsnList guard(MethodInsnNode call, String implementation, int scratch) {
+        InsnList code = new InsnList();
+        LabelNode fallback = new LabelNode();
+        LabelNode end = new LabelNode();
+
+        // The receiver is below the arguments, so the arguments are parked in the scratch locals
+        Type[] arguments = Type.getArgumentTypes(call.desc);
+        int[] slots = new int[arguments.length];
+        int slot = scratch;
+        for (int i = 0; i < arguments.length; i++) {
+            slots[i] = slot;
+            slot += arguments[i].getSize();
+        }
+        for (int i = arguments.length - 1; i >= 0; i--) {
+            code.add(new VarInsnNode(arguments[i].getOpcode(Opcodes.ISTORE), slots[i]));
+        }
+
+        code.add(new InsnNode(Opcodes.DUP));
+        code.add(new TypeInsnNode(Opcodes.INSTANCEOF, implementation));
+        code.add(new JumpInsnNode(Opcodes.IFEQ, fallback));
+        code.add(new TypeInsnNode(Opcodes.CHECKCAST, implementation));
+        loadArguments(code, arguments, slots);
+        code.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, implementation, call.name, call.desc, false));
+        code.add(new JumpInsnNode(Opcodes.GOTO, end));
+        code.add(fallback);
+        loadArguments(code, arguments, slots);
+        code.add(new MethodInsnNode(call.getOpcode(), call.owner, call.name, call.desc, call.itf));
+        code.add(end);
+        return code;
+    }
+
+    private static void loadArguments(InsnList code, Type[] arguments, int[] slots) {
+        for (int i = 0; i < arguments.length; i++) {
+            code.add(new VarInsnNode(arguments[i].getOpcode(Opcodes.ILOAD), slots[i]));
+        }
+    }
+
+    private static List<String> reportLines() {
+        List<String> lines = new ArrayList<>();
+        long total = 0;
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(REWRITTEN).entrySet()) {
+            lines.add(entry.getKey() + ": " + entry.getValue().sum() + " call sites");
+            total += entry.getValue().sum();
+        }
+        lines.add("Total: " + total + " guarded direct calls");
+        if (CAPPED_SITES.sum() > 0) {
+            lines.add(CAPPED_SITES.sum() + " call sites left alone because of jit-huge-method-limit");
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,323 @@
+package de.zonlykroks.massasmer.transformer;
+
+import de.zonlykroks.massasmer.MassASMTransformer;
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.NodeTransformContext;
+import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import de.zonlykroks.massasmer.util.InsnUtils;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import org.apache.logging.log4j.LogManager;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.*;
+
+/**
+ * Node transformer that removes debug/trace logging calls, or wraps them in an
+ * {@code isDebugEnabled()}/{@code isTraceEnabled()} guard, so the message arguments
+ * (string concatenation, boxing, varargs arrays) are no longer built when the level is off.
+ * <p>
+ * Log4j and SLF4J loggers are recognized. In {@link Mode#STRIP} the whole argument
+ * expression is removed together with the call, so side effects inside the arguments are dropped as well.
+ */
+public class LogCallStripper implements MassASMTransformer.ContextNodeTransformer {
+    private static final LoggerWrapper LOGGER = new LoggerWrapper(LogManager.getLogger("MassASM-LogCallStripper"), MassasmerPreLaunch.configManager.isLogEnabled());
+
+    private static final Set<String> LOGGER_OWNERS = Set.of(
+            "org/apache/logging/log4j/Logger",
+            "org/slf4j/Logger"
+    );
+
+    private final Mode mode;
+    private final Set<String> levels;
+
+    /**
+     * What to do with a matched logging call
+     */
+    public enum Mode {
+        /** Remove the call and the instructions building its arguments */
+        STRIP,
+        /** Keep the call, but only evaluate it when the level is enabled */
+        GUARD
+    }
+
+    /**
+     * Creates a new stripper.
+     *
+     * @param mode   How matched calls should be handled
+     * @param levels The lower-case level method names to match, e.g. {@code debug} and {@code trace}
+     */
+    public LogCallStripper(Mode mode, Collection<String> levels) {
+        this.mode = mode;
+        this.levels = Set.copyOf(levels);
+    }
+
+    /**
+     * Registers a log call stripper for the debug and trace levels.
+     *
+     * @param name   Unique transformer name
+     * @param filter Classes whose logging calls should be rewritten
+     * @param mode   How matched calls should be handled
+     */
+    public static void register(String name, TransformerFilter filter, Mode mode) {
+        register(name, filter, mode, List.of("debug", "trace"));
+    }
+
+    /**
+     * Registers a log call stripper for the given levels.
+     *
+     * @param name   Unique transformer name
+     * @param filter Classes whose logging calls should be rewritten
+     * @param mode   How matched calls should be handled
+     * @param levels The lower-case level method names to match
+     */
+    public static void register(String name, TransformerFilter filter, Mode mode, Collection<String> levels) {
+        MassASMTransformer.registerNodeTransformer(name, filter, new LogCallStripper(mode, levels));
+    }
+
+    @Override
+    public boolean transform(NodeTransformContext context) {
+        int rewritten = 0;
+        for (MethodNode method : context.getClassNode().methods) {
+            if (method.instructions.size() == 0) continue;
+            rewritten += transformMethod(context, method);
+        }
+
+        if (rewritten > 0) {
+            LOGGER.info("{} {} log call(s) in {}", mode == Mode.STRIP ? "Stripped" : "Guarded", rewritten, context.getClassName());
+        }
+        return rewritten > 0;
+    }
+
+    private int transformMethod(NodeTransformContext context, MethodNode method) {
+        AbstractInsnNode[] insns = method.instructions.toArray();
+
+        List<Integer> calls = new ArrayList<>();
+        for (int i = 0; i < insns.length; i++) {
+            if (isLogCall(insns[i])) calls.add(i);
+        }
+        if (calls.isEmpty()) return 0;
+
+        Frame<BasicValue>[] frames;
+        // Sources are resolved against the untouched method, guarding changes its instructions
+        Frame<SourceValue>[] sources;
+        try {
+            frames = context.basicFrames(method);
+            sources = mode == Mode.GUARD ? context.sourceFrames(method) : null;
+        } catch (AnalyzerException e) {
+            LOGGER.warn("Skipping {}.{}{}, analysis failed: {}", context.getClassNode().name, method.name, method.desc, e.getMessage());
+            return 0;
+        }
+
+        Map<LabelNode, List<Integer>> jumpSources = collectJumpSources(insns);
+        Set<LabelNode> tryCatchLabels = new HashSet<>();
+        for (TryCatchBlockNode block : method.tryCatchBlocks) {
+            tryCatchLabels.add(block.start);
+            tryCatchLabels.add(block.end);
+            tryCatchLabels.add(block.handler);
+        }
+
+        // Resolve all ranges against the untouched instruction array first, then rewrite
+        List<int[]> ranges = new ArrayList<>();
+        for (int call : calls) {
+            int start = findRangeStart(insns, frames, call);
+            if (start < 0 || !isSelfContained(insns, jumpSources, tryCatchLabels, start, call)) continue;
+            if (!ranges.isEmpty() && ranges.get(ranges.size() - 1)[1] >= start) continue;
+            ranges.add(new int[]{start, call});
+        }
+
+        int rewritten = 0;
+        for (int[] range : ranges) {
+            boolean done = mode == Mode.STRIP
+                    ? strip(method.instructions, insns, range[0], range[1])
+                    : guard(method.instructions, insns, frames, sources, range[0], range[1]);
+            if (done) rewritten++;
+        }
+        return rewritten;
+    }
+
+    private boolean isLogCall(AbstractInsnNode insn) {
+        if (!(insn instanceof MethodInsnNode call)) return false;
+        if (call.getOpcode() != Opcodes.INVOKEINTERFACE && call.getOpcode() != Opcodes.INVOKEVIRTUAL) return false;
+        return LOGGER_OWNERS.contains(call.owner)
+                && levels.contains(call.name)
+                && Type.getReturnType(call.desc) == Type.VOID_TYPE;
+    }
+
+    /**
+     * Walks backwards from the call to the instruction pushing the logger receiver,
+     * which is the last point where the stack is as deep as it will be after the call.
+     */
+    private int findRangeStart(AbstractInsnNode[] insns, Frame<BasicValue>[] frames, int call) {
+        if (frames[call] == null) return -1;
+
+        int consumed = Type.getArgumentTypes(((MethodInsnNode) insns[call]).desc).length + 1;
+        int targetHeight = frames[call].getStackSize() - consumed;
+
+        for (int i = call - 1; i >= 0; i--) {
+            if (frames[i] == null) return -1;
+            int height = frames[i].getStackSize();
+            if (height < targetHeight) return -1;
+            if (height == targetHeight && insns[i].getOpcode() >= 0) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * A range can only be removed or wrapped when control flow neither enters nor leaves it
+     * other than by falling through, and no exception table entry starts or ends inside it.
+     * It must not write locals either, e.g. {@code i++} or javac's temporaries for switch
+     * expressions and patterns: later loads would see a skipped or missing store.
+     */
+    private boolean isSelfContained(AbstractInsnNode[] insns,
+                                    Map<LabelNode, List<Integer>> jumpSources,
+                                    Set<LabelNode> tryCatchLabels,
+                                    int start,
+                                    int end) {
+        Set<LabelNode> inside = new HashSet<>();
+        for (int i = start + 1; i < end; i++) {
+            if (insns[i] instanceof LabelNode label) {
+                if (tryCatchLabels.contains(label)) return false;
+                for (int source : jumpSources.getOrDefault(label, List.of())) {
+                    if (source < start || source > end) return false;
+                }
+                inside.add(label);
+            }
+        }
+
+        for (int i = start; i <= end; i++) {
+            int opcode = insns[i].getOpcode();
+            if (opcode == Opcodes.JSR || opcode == Opcodes.RET) return false;
+            if ((opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE) || opcode == Opcodes.IINC) return false;
+            for (LabelNode target : InsnUtils.targetsOf(insns[i])) {
+                if (!inside.contains(target)) return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean strip(InsnList list, AbstractInsnNode[] insns, int start, int end) {
+        for (int i = start; i <= end; i++) {
+            // Labels stay so line numbers and local variable ranges remain valid
+            if (insns[i].getOpcode() >= 0 || insns[i] instanceof FrameNode) {
+                list.remove(insns[i]);
+            }
+        }
+        return true;
+    }
+
+    private boolean guard(InsnList list,
+                          AbstractInsnNode[] insns,
+                          Frame<BasicValue>[] frames,
+                          Frame<SourceValue>[] sources,
+                          int start,
+                          int end) {
+        if (isAlreadyGuarded(insns, start) || !allocates(insns, start, end)) return false;
+
+        MethodInsnNode call = (MethodInsnNode) insns[end];
+        int receiverSlot = frames[end].getStackSize() - Type.getArgumentTypes(call.desc).length - 1;
+        InsnList receiver = copyReceiverLoad(insns, frames, sources, start, receiverSlot, end);
+        if (receiver == null) return false;
+
+        String check = "is" + Character.toUpperCase(call.name.charAt(0)) + call.name.substring(1) + "Enabled";
+        LabelNode skip = new LabelNode();
+
+        InsnList guard = new InsnList();
+        guard.add(receiver);
+        guard.add(new MethodInsnNode(call.getOpcode(), call.owner, check, "()Z", call.itf));
+        guard.add(new JumpInsnNode(Opcodes.IFEQ, skip));
+
+        list.insertBefore(insns[start], guard);
+        list.insert(insns[end], skip);
+        return true;
+    }
+
+    /**
+     * Copies the receiver load if it is a plain static field, local, or field chain on a local,
+     * which is what effectively every logger access compiles to. Returns null unless the value
+     * the call is made on is exactly the one the copied instructions produce, e.g. for a
+     * receiver computed by {@code this.getLogger()}.
+     */
+    private InsnList copyReceiverLoad(AbstractInsnNode[] insns,
+                                      Frame<BasicValue>[] frames,
+                                      Frame<SourceValue>[] sources,
+                                      int start,
+                                      int receiverSlot,
+                                      int call) {
+        int height = frames[start].getStackSize();
+        InsnList copy = new InsnList();
+
+        int opcode = insns[start].getOpcode();
+        if (opcode != Opcodes.GETSTATIC && opcode != Opcodes.ALOAD) return null;
+        copy.add(insns[start].clone(Map.of()));
+        AbstractInsnNode last = insns[start];
+
+        for (int i = start + 1; i < insns.length; i++) {
+            AbstractInsnNode insn = insns[i];
+            if (insn.getOpcode() < 0) continue;
+            if (insn.getOpcode() == Opcodes.GETFIELD
+                    && frames[i].getStackSize() == height + 1
+                    && isProducedBy(sources[i], height, last)) {
+                copy.add(insn.clone(Map.of()));
+                last = insn;
+                continue;
+            }
+            break;
+        }
+        return isProducedBy(sources[call], receiverSlot, last) ? copy : null;
+    }
+
+    private static boolean isProducedBy(Frame<SourceValue> frame, int slot, AbstractInsnNode producer) {
+        if (frame == null || slot < 0 || slot >= frame.getStackSize()) return false;
+        Set<AbstractInsnNode> producers = frame.getStack(slot).insns;
+        return producers.size() == 1 && producers.contains(producer);
+    }
+
+    private boolean isAlreadyGuarded(AbstractInsnNode[] insns, int start) {
+        AbstractInsnNode previous = previousReal(insns, start);
+        if (previous == null || previous.getOpcode() != Opcodes.IFEQ) return false;
+        AbstractInsnNode check = previous.getPrevious();
+        while (check != null && check.getOpcode() < 0) check = check.getPrevious();
+        return check instanceof MethodInsnNode call
+                && call.name.startsWith("is")
+                && call.name.endsWith("Enabled")
+                && LOGGER_OWNERS.contains(call.owner);
+    }
+
+    private boolean allocates(AbstractInsnNode[] insns, int start, int end) {
+        for (int i = start; i < end; i++) {
+            switch (insns[i].getOpcode()) {
+                case Opcodes.NEW, Opcodes.NEWARRAY, Opcodes.ANEWARRAY, Opcodes.MULTIANEWARRAY,
+                     Opcodes.INVOKEVIRTUAL, Opcodes.INVOKESPECIAL, Opcodes.INVOKESTATIC,
+                     Opcodes.INVOKEINTERFACE, Opcodes.INVOKEDYNAMIC -> {
+                    return true;
+                }
+                default -> {
+                }
+            }
+        }
+        return false;
+    }
+
+    private static AbstractInsnNode previousReal(AbstractInsnNode[] insns, int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            if (insns[i].getOpcode() >= 0) return insns[i];
+        }
+        return null;
+    }
+
+    private static Map<LabelNode, List<Integer>> collectJumpSources(AbstractInsnNode[] insns) {
+        Map<LabelNode, List<Integer>> sources = new HashMap<>();
+        for (int i = 0; i < insns.length; i++) {
+            for (LabelNode target : InsnUtils.targetsOf(insns[i])) {
+                sources.computeIfAbsent(target, k -> new ArrayList<>()).add(i);
+            }
+        }
+        return sources;
+    }
+}
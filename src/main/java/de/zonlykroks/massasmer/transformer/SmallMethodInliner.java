@@ -0,0 +1,385 @@
+package de.zonlykroks.massasmer.transformer;
+
+import de.zonlykroks.massasmer.MassASMTransformer;
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import de.zonlykroks.massasmer.diagnostics.StartupReport;
+import de.zonlykroks.massasmer.filter.api.TransformerFilter;
+import de.zonlykroks.massasmer.util.ClassFileInspector;
+import de.zonlykroks.massasmer.util.ClassHeaders;
+import de.zonlykroks.massasmer.util.LoggerWrapper;
+import org.apache.logging.log4j.LogManager;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node transformer that copies the bytecode of declared small methods into their callers, for
+ * hot calls HotSpot does not inline on its own, e.g. because of the inlining depth limit.
+ * <p>
+ * Only methods that cannot be overridden are inlined: static, private and final methods, and
+ * methods of final classes. They must not be synchronized, have exception handlers, or exceed
+ * the configured bytecode size. A call site is only rewritten if the calling class may access
+ * every class, field and method the inlined body references; otherwise the call is left alone.
+ * Static calls that may be what initializes the target's class are only inlined from within that
+ * class's hierarchy.
+ * <p>
+ * The body is taken from the target's class file as shipped, so transformations applied to the
+ * target method itself are not part of the inlined copies. Declarations are global: every
+ * registered inliner sees all of them, they only differ in the classes they are applied to.
+ */
+public class SmallMethodInliner implements MassASMTransformer.ClassNodeTransformer {
+    private static final LoggerWrapper LOGGER = new LoggerWrapper(LogManager.getLogger("MassASM-Inliner"), MassasmerPreLaunch.configManager.isLogEnabled());
+
+    // Keyed by "owner.name(desc)", owner in internal form
+    private static final Set<String> DECLARED = ConcurrentHashMap.newKeySet();
+    private static final Map<String, Optional<Target>> TARGETS = new ConcurrentHashMap<>();
+
+    private static final Map<String, LongAdder> INLINED_SITES = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> INLINED_BYTES = new ConcurrentHashMap<>();
+    private static final LongAdder CAPPED_SITES = new LongAdder();
+
+    private final int maxSize;
+    private final int maxGrowth;
+    private final int hugeMethodLimit;
+
+    /**
+     * Creates a new inliner.
+     *
+     * @param maxSize   The maximum bytecode size of an inlined method
+     * @param maxGrowth The maximum number of bytes inlining may add to a single caller
+     */
+    public SmallMethodInliner(int maxSize, int maxGrowth) {
+        this.maxSize = maxSize;
+        this.maxGrowth = maxGrowth;
+        this.hugeMethodLimit = MassasmerPreLaunch.configManager.getJitHugeMethodLimit();
+    }
+
+    /**
+     * Declares a method whose calls should be inlined.
+     *
+     * @param className  The fully qualified name of the declaring class
+     * @param methodName The method name
+     * @param descriptor The method descriptor, for example {@code (III)I}
+     */
+    public static void declareMethod(String className, String methodName, String descriptor) {
+        DECLARED.add(className.replace('.', '/') + "." + methodName + descriptor);
+    }
+
+    /**
+     * Parses a declaration of the form {@code com.example.MathUtil#clamp(III)I},
+     * as used in {@code massasm.properties}.
+     *
+     * @param declaration The declaration to parse
+     * @throws IllegalArgumentException if the declaration is malformed
+     */
+    public static void declare(String declaration) {
+        int hash = declaration.indexOf('#');
+        int paren = declaration.indexOf('(', hash + 1);
+        if (hash <= 0 || paren < 0) {
+            throw new IllegalArgumentException("Malformed inline declaration: " + declaration);
+        }
+        declareMethod(declaration.substring(0, hash).trim(),
+                declaration.substring(hash + 1, paren).trim(),
+                declaration.substring(paren).trim());
+    }
+
+    /**
+     * Registers an inliner for the given classes.
+     *
+     * @param name      Unique transformer name
+     * @param filter    Classes in which calls to declared methods should be inlined
+     * @param maxSize   The maximum bytecode size of an inlined method
+     * @param maxGrowth The maximum number of bytes inlining may add to a single caller
+     */
+    public static void register(String name, TransformerFilter filter, int maxSize, int maxGrowth) {
+        StartupReport.registerSection("Method inlining", SmallMethodInliner::reportLines);
+        MassASMTransformer.registerNodeTransformer(name, filter, new SmallMethodInliner(maxSize, maxGrowth));
+    }
+
+    @Override
+    public boolean transform(String className, ClassNode classNode) {
+        if (DECLARED.isEmpty()) return false;
+
+        Map<Target, Boolean> accessible = new HashMap<>();
+        int inlined = 0;
+        int growth = 0;
+        for (MethodNode method : classNode.methods) {
+            if (method.instructions.size() == 0) continue;
+
+            int budget = maxGrowth;
+            int size = estimateSize(method.instructions);
+            int methodInlined = 0;
+            for (AbstractInsnNode insn : method.instructions.toArray()) {
+                if (!(insn instanceof MethodInsnNode call)) continue;
+
+                String key = call.owner + "." + call.name + call.desc;
+                if (!DECLARED.contains(key)) continue;
+
+                Target target = TARGETS.computeIfAbsent(key, k -> Optional.ofNullable(loadTarget(call.owner, call.name, call.desc))).orElse(null);
+                if (target == null || target.codeLength() > maxSize || !target.isCalledBy(call)) continue;
+                if (!accessible.computeIfAbsent(target, t -> isAccessible(t, classNode))) continue;
+                // The call may be what initializes the target's class, only callers within its
+                // hierarchy know it is initialized already
+                if (target.initializesOwner() && !ClassHeaders.isSubclassOrSelf(classNode, target.owner())) continue;
+
+                int added = target.growth();
+                if (added > budget || size + added > hugeMethodLimit) {
+                    CAPPED_SITES.increment();
+                    continue;
+                }
+
+                inline(method, call, target);
+                budget -= added;
+                size += added;
+                growth += added;
+                methodInlined++;
+                INLINED_SITES.computeIfAbsent(key, k -> new LongAdder()).increment();
+                INLINED_BYTES.computeIfAbsent(key, k -> new LongAdder()).add(added);
+            }
+
+            if (methodInlined > 0) {
+                DeadBranchEliminator.removeRedundantGotos(method.instructions);
+                inlined += methodInlined;
+            }
+        }
+
+        if (inlined > 0) {
+            LOGGER.info("Inlined {} call(s) in {}, about {} bytes added", inlined, className, growth);
+        }
+        return inlined > 0;
+    }
+
+    private static void inline(MethodNode caller, MethodInsnNode call, Target target) {
+        MethodNode body = target.method();
+        int base = caller.maxLocals;
+        InsnList code = new InsnList();
+
+        // The arguments are on the stack, the last one on top: store them into fresh locals
+        Type[] arguments = Type.getArgumentTypes(call.desc);
+        int[] slots = new int[arguments.length];
+        int slot = target.isStatic() ? 0 : 1;
+        for (int i = 0; i < arguments.length; i++) {
+            slots[i] = slot;
+            slot += arguments[i].getSize();
+        }
+        for (int i = arguments.length - 1; i >= 0; i--) {
+            code.add(new VarInsnNode(arguments[i].getOpcode(Opcodes.ISTORE), base + slots[i]));
+        }
+        if (!target.isStatic()) {
+            // Calling on null throws even if the body never touches the receiver
+            code.add(new InsnNode(Opcodes.DUP));
+            code.add(new MethodInsnNode(Opcodes.INVOKESTATIC, "java/util/Objects", "requireNonNull", "(Ljava/lang/Object;)Ljava/lang/Object;", false));
+            code.add(new InsnNode(Opcodes.POP));
+            code.add(new VarInsnNode(Opcodes.ASTORE, base));
+        }
+
+        Map<LabelNode, LabelNode> labels = new HashMap<>();
+        for (AbstractInsnNode insn = body.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof LabelNode label) labels.put(label, new LabelNode());
+        }
+
+        LabelNode end = new LabelNode();
+        for (AbstractInsnNode insn = body.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            // Frames are recomputed, and the target's line numbers would point into the wrong file
+            if (insn instanceof LineNumberNode || insn instanceof FrameNode) continue;
+
+            int opcode = insn.getOpcode();
+            if (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) {
+                code.add(new JumpInsnNode(Opcodes.GOTO, end));
+                continue;
+            }
+
+            AbstractInsnNode copy = insn.clone(labels);
+            if (copy instanceof VarInsnNode var) {
+                var.var += base;
+            } else if (copy instanceof IincInsnNode iinc) {
+                iinc.var += base;
+            }
+            code.add(copy);
+        }
+        code.add(end);
+
+        caller.instructions.insert(call, code);
+        caller.instructions.remove(call);
+        caller.maxLocals = base + body.maxLocals;
+    }
+
+    private static Target loadTarget(String owner, String name, String desc) {
+        byte[] bytes = ClassHeaders.readClass(owner);
+        if (bytes == null) {
+            LOGGER.warn("Not inlining {}.{}{}, its class file was not found", owner, name, desc);
+            return null;
+        }
+
+        ClassNode classNode = new ClassNode();
+        new ClassReader(bytes).accept(classNode, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        MethodNode method = null;
+        for (MethodNode candidate : classNode.methods) {
+            if (candidate.name.equals(name) && candidate.desc.equals(desc)) method = candidate;
+        }
+        int codeLength = 0;
+        for (ClassFileInspector.Member member : ClassFileInspector.of(bytes).methods()) {
+            if (member.name().equals(name) && member.descriptor().equals(desc)) codeLength = member.codeLength();
+        }
+
+        String reason = rejectionReason(classNode, method);
+        if (reason != null) {
+            LOGGER.warn("Not inlining {}.{}{}: {}", owner, name, desc, reason);
+            return null;
+        }
+        boolean isStatic = (method.access & Opcodes.ACC_STATIC) != 0;
+        return new Target(owner, method, isStatic, codeLength,
+                codeLength + 2 * Type.getArgumentTypes(desc).length + 8,
+                isStatic && ClassHeaders.hasInitializer(classNode) && !referencesOwnerStatic(method, owner));
+    }
+
+    // The copied body initializes the owner itself when it touches one of its statics
+    private static boolean referencesOwnerStatic(MethodNode method, String owner) {
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            int opcode = insn.getOpcode();
+            if (insn instanceof FieldInsnNode field && (opcode == Opcodes.GETSTATIC || opcode == Opcodes.PUTSTATIC) && field.owner.equals(owner)) {
+                return true;
+            }
+            if (insn instanceof MethodInsnNode call && opcode == Opcodes.INVOKESTATIC && call.owner.equals(owner)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String rejectionReason(ClassNode owner, MethodNode method) {
+        if (method == null) return "no such method";
+        if (method.instructions.size() == 0) return "it has no code";
+        if ((method.access & Opcodes.ACC_SYNCHRONIZED) != 0) return "it is synchronized";
+        if (!method.tryCatchBlocks.isEmpty()) return "it has exception handlers";
+        if (method.name.startsWith("<")) return "it is a constructor or initializer";
+
+        boolean overridable = (method.access & (Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL)) == 0
+                && (owner.access & Opcodes.ACC_FINAL) == 0;
+        if (overridable) return "it may be overridden";
+
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn.getOpcode() == Opcodes.JSR || insn.getOpcode() == Opcodes.RET) return "it uses subroutines";
+        }
+
+        // A return may leave more than its value on the stack, a jump to the call site may not
+        Frame<BasicValue>[] frames;
+        try {
+            frames = new Analyzer<>(new BasicInterpreter()).analyze(owner.name, method);
+        } catch (AnalyzerException e) {
+            return "analysis failed: " + e.getMessage();
+        }
+        int returnSize = Type.getReturnType(method.desc) == Type.VOID_TYPE ? 0 : 1;
+        AbstractInsnNode[] insns = method.instructions.toArray();
+        for (int i = 0; i < insns.length; i++) {
+            int opcode = insns[i].getOpcode();
+            if (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN && frames[i] != null && frames[i].getStackSize() != returnSize) {
+                return "it returns with extra values on the stack";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks that the inlined body only references classes and members the caller may access.
+     * Protected members and members only inherited from interfaces count as inaccessible,
+     * which is conservative.
+     */
+    private static boolean isAccessible(Target target, ClassNode caller) {
+        if (caller.name.equals(target.owner())) return true;
+
+        for (AbstractInsnNode insn = target.method().instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            boolean ok = switch (insn) {
+                case FieldInsnNode field -> ClassHeaders.isTypeAccessible(field.owner, caller.name)
+                        && ClassHeaders.isMemberAccessible(field.owner, field.name, field.desc, true, caller.name);
+                case MethodInsnNode method -> {
+                    if (method.owner.startsWith("[")) yield ClassHeaders.isTypeAccessible(method.owner, caller.name);
+                    // invokespecial outside of constructor calls binds to the target's own class
+                    if (method.getOpcode() == Opcodes.INVOKESPECIAL && !method.name.equals("<init>")) yield false;
+                    yield ClassHeaders.isTypeAccessible(method.owner, caller.name)
+                            && ClassHeaders.isMemberAccessible(method.owner, method.name, method.desc, false, caller.name);
+                }
+                case TypeInsnNode type -> ClassHeaders.isTypeAccessible(type.desc, caller.name);
+                case MultiANewArrayInsnNode array -> ClassHeaders.isTypeAccessible(array.desc, caller.name);
+                case LdcInsnNode ldc -> {
+                    if (ldc.cst instanceof Type type) {
+                        yield type.getSort() != Type.METHOD && ClassHeaders.isTypeAccessible(type.getInternalName(), caller.name);
+                    }
+                    yield !(ldc.cst instanceof Handle) && !(ldc.cst instanceof ConstantDynamic);
+                }
+                // Lambdas and string concatenation may bootstrap from private members of the target class
+                case InvokeDynamicInsnNode indy -> false;
+                default -> true;
+            };
+            if (!ok) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Estimates the bytecode size of an instruction list, assuming the common encodings.
+     *
+     * @param insns The instructions
+     * @return The approximate size in bytes
+     */
+    static int estimateSize(InsnList insns) {
+        int size = 0;
+        for (AbstractInsnNode insn = insns.getFirst(); insn != null; insn = insn.getNext()) {
+            size += switch (insn.getType()) {
+                case AbstractInsnNode.INSN -> 1;
+                case AbstractInsnNode.INT_INSN, AbstractInsnNode.VAR_INSN, AbstractInsnNode.LDC_INSN -> 2;
+                case AbstractInsnNode.TYPE_INSN, AbstractInsnNode.FIELD_INSN, AbstractInsnNode.JUMP_INSN, AbstractInsnNode.IINC_INSN -> 3;
+                case AbstractInsnNode.METHOD_INSN -> insn.getOpcode() == Opcodes.INVOKEINTERFACE ? 5 : 3;
+                case AbstractInsnNode.INVOKE_DYNAMIC_INSN, AbstractInsnNode.MULTIANEWARRAY_INSN -> 5;
+                case AbstractInsnNode.TABLESWITCH_INSN -> 16 + 4 * ((TableSwitchInsnNode) insn).labels.size();
+                case AbstractInsnNode.LOOKUPSWITCH_INSN -> 12 + 8 * ((LookupSwitchInsnNode) insn).labels.size();
+                default -> 0;
+            };
+        }
+        return size;
+    }
+
+    private static List<String> reportLines() {
+        List<String> lines = new ArrayList<>();
+        long sites = 0;
+        long bytes = 0;
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(INLINED_SITES).entrySet()) {
+            long added = INLINED_BYTES.getOrDefault(entry.getKey(), new LongAdder()).sum();
+            lines.add(entry.getKey() + ": " + entry.getValue().sum() + " call sites, +" + added + " bytes");
+            sites += entry.getValue().sum();
+            bytes += added;
+        }
+        lines.add("Total: " + sites + " call sites inlined, +" + bytes + " bytes of bytecode");
+        if (CAPPED_SITES.sum() > 0) {
+            lines.add(CAPPED_SITES.sum() + " call sites left alone because of the growth limits");
+        }
+        return lines;
+    }
+
+    /**
+     * A method that passed all checks that do not depend on the caller.
+     *
+     * @param growth The estimated number of bytes an inlined copy adds to a caller
+     */
+    // initializesOwner: a static target whose class has initializer code the copied body would not trigger
+    private record Target(String owner, MethodNode method, boolean isStatic, int codeLength, int growth, boolean initializesOwner) {
+        boolean isCalledBy(MethodInsnNode call) {
+            return isStatic
+                    ? call.getOpcode() == Opcodes.INVOKESTATIC
+                    : call.getOpcode() == Opcodes.INVOKEVIRTUAL || call.getOpcode() == Opcodes.INVOKESPECIAL;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package de.zonlykroks.massasmer.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Thread-local scratch buffers for reading class files, so reading a class costs a single
+ * exactly sized allocation instead of a fresh read buffer plus a growing output stream.
+ */
+public final class ClassByteBuffers {
+    private static final int INITIAL_SIZE = 16 * 1024;
+    // Buffers grown beyond this for unusually large classes are not kept around
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[INITIAL_SIZE]);
+
+    private ClassByteBuffers() {}
+
+    /**
+     * Reads the stream to its end.
+     *
+     * @param is The stream to read, not closed by this method
+     * @return The read bytes, in an array of exactly the read length
+     * @throws IOException if reading fails
+     */
+    public static byte[] readFully(InputStream is) throws IOException {
+        byte[] buffer = BUFFER.get();
+
+        // Jar entry streams report the remaining uncompressed size, use it to avoid regrowing
+        int hint = is.available();
+        if (hint >= buffer.length) {
+            buffer = grow(buffer, hint + 1);
+        }
+
+        int length = 0;
+        int read;
+        while ((read = is.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) {
+                buffer = grow(buffer, buffer.length * 2);
+            }
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static byte[] grow(byte[] buffer, int size) {
+        byte[] grown = Arrays.copyOf(buffer, size);
+        if (size <= MAX_RETAINED_SIZE) {
+            BUFFER.set(grown);
+        }
+        return grown;
+    }
+}
@@ -0,0 +1,248 @@
+package de.zonlykroks.massasmer.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Minimal class file parser reading the constant pool, fields and method code sizes
+ * directly from the bytes, without building any ASM structures. Meant for diagnostics and
+ * cheap pre-checks on the class-loading path.
+ */
+public final class ClassFileInspector {
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    public static final int CONSTANT_CLASS = 7;
+
+    private final byte[] bytes;
+    private final int[] constantOffsets;
+    private final int headerOffset;
+
+    private List<Member> fields;
+    private List<Member> methods;
+
+    private ClassFileInspector(byte[] bytes) {
+        this.bytes = bytes;
+
+        int count = readUnsignedShort(8);
+        this.constantOffsets = new int[count];
+
+        int offset = 10;
+        for (int i = 1; i < count; i++) {
+            constantOffsets[i] = offset;
+            int tag = bytes[offset] & 0xFF;
+            offset += switch (tag) {
+                case CONSTANT_UTF8 -> 3 + readUnsignedShort(offset + 1);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> 5;
+                case CONSTANT_LONG, CONSTANT_DOUBLE -> 9;
+                case 15 -> 4;
+                case CONSTANT_CLASS, 8, 16, 19, 20 -> 3;
+                default -> throw new IllegalArgumentException("Unknown constant pool tag " + tag + " at " + offset);
+            };
+            if (tag == CONSTANT_LONG || tag == CONSTANT_DOUBLE) {
+                i++;
+            }
+        }
+        this.headerOffset = offset;
+    }
+
+    /**
+     * Parses the constant pool of a class file. Fields and methods are parsed lazily.
+     *
+     * @param bytes The class file bytes
+     * @return The inspector
+     * @throws IllegalArgumentException if the bytes are not a valid class file
+     */
+    public static ClassFileInspector of(byte[] bytes) {
+        if (bytes.length < 10 || readInt(bytes, 0) != 0xCAFEBABE) {
+            throw new IllegalArgumentException("Not a class file");
+        }
+        return new ClassFileInspector(bytes);
+    }
+
+    /**
+     * Gets the constant pool count as stored in the class file, which is one more than the number of slots in use.
+     *
+     * @return The constant pool count
+     */
+    public int constantPoolCount() {
+        return constantOffsets.length;
+    }
+
+    /**
+     * Gets the internal name of the class.
+     *
+     * @return The class name, e.g. {@code net/minecraft/client/Minecraft}
+     */
+    public String className() {
+        return classNameAt(readUnsignedShort(headerOffset + 2));
+    }
+
+    /**
+     * Gets the tag of a constant pool entry.
+     *
+     * @param index The constant pool index
+     * @return The entry tag, 0 for unused slots
+     */
+    public int tag(int index) {
+        int offset = constantOffsets[index];
+        return offset == 0 ? 0 : bytes[offset] & 0xFF;
+    }
+
+    /**
+     * Decodes a CONSTANT_Utf8 entry.
+     *
+     * @param index The constant pool index
+     * @return The decoded string
+     */
+    public String utf8(int index) {
+        int offset = constantOffsets[index];
+        int length = readUnsignedShort(offset + 1);
+        int start = offset + 3;
+
+        boolean ascii = true;
+        for (int i = start; i < start + length; i++) {
+            if (bytes[i] <= 0) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            return new String(bytes, start, length, StandardCharsets.ISO_8859_1);
+        }
+        return decodeModifiedUtf8(start, length);
+    }
+
+    /**
+     * Gets the name of a CONSTANT_Class entry.
+     *
+     * @param index The constant pool index
+     * @return The internal class name
+     */
+    public String classNameAt(int index) {
+        return utf8(readUnsignedShort(constantOffsets[index] + 1));
+    }
+
+    /**
+     * Gets the fields declared by the class.
+     *
+     * @return The fields, code length is always -1
+     */
+    public List<Member> fields() {
+        parseMembers();
+        return fields;
+    }
+
+    /**
+     * Gets the methods declared by the class.
+     *
+     * @return The methods, with their bytecode length or -1 for abstract and native methods
+     */
+    public List<Member> methods() {
+        parseMembers();
+        return methods;
+    }
+
+    /**
+     * Reads an unsigned 16-bit value.
+     *
+     * @param offset The offset in the class file
+     * @return The value
+     */
+    public int readUnsignedShort(int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    /**
+     * Gets the offset of a constant pool entry's tag byte.
+     *
+     * @param index The constant pool index
+     * @return The offset in the class file
+     */
+    public int constantOffset(int index) {
+        return constantOffsets[index];
+    }
+
+    private void parseMembers() {
+        if (methods != null) return;
+
+        int offset = headerOffset + 6;
+        int interfaces = readUnsignedShort(offset);
+        offset += 2 + interfaces * 2;
+
+        List<Member> parsedFields = new ArrayList<>();
+        offset = parseMembers(offset, parsedFields);
+        List<Member> parsedMethods = new ArrayList<>();
+        parseMembers(offset, parsedMethods);
+
+        this.fields = Collections.unmodifiableList(parsedFields);
+        this.methods = Collections.unmodifiableList(parsedMethods);
+    }
+
+    private int parseMembers(int offset, List<Member> members) {
+        int count = readUnsignedShort(offset);
+        offset += 2;
+
+        for (int i = 0; i < count; i++) {
+            int access = readUnsignedShort(offset);
+            String name = utf8(readUnsignedShort(offset + 2));
+            String descriptor = utf8(readUnsignedShort(offset + 4));
+            int attributes = readUnsignedShort(offset + 6);
+            offset += 8;
+
+            int codeLength = -1;
+            for (int a = 0; a < attributes; a++) {
+                String attributeName = utf8(readUnsignedShort(offset));
+                int length = readInt(bytes, offset + 2);
+                if (attributeName.equals("Code")) {
+                    // max_stack (2), max_locals (2), then code_length
+                    codeLength = readInt(bytes, offset + 10);
+                }
+                offset += 6 + length;
+            }
+            members.add(new Member(access, name, descriptor, codeLength));
+        }
+        return offset;
+    }
+
+    private String decodeModifiedUtf8(int start, int length) {
+        char[] chars = new char[length];
+        int count = 0;
+        int i = start;
+        int end = start + length;
+        while (i < end) {
+            int c = bytes[i++] & 0xFF;
+            if (c < 0x80) {
+                chars[count++] = (char) c;
+            } else if ((c & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((c & 0x1F) << 6) | (bytes[i++] & 0x3F));
+            } else {
+                chars[count++] = (char) (((c & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24)
+                | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8)
+                | (bytes[offset + 3] & 0xFF);
+    }
+
+    /**
+     * A field or method of the inspected class.
+     *
+     * @param access     The access flags
+     * @param name       The member name
+     * @param descriptor The member descriptor
+     * @param codeLength The bytecode length of a method, -1 if there is no code
+     */
+    public record Member(int access, String name, String descriptor, int codeLength) {
+        public String key() {
+            return name + descriptor;
+        }
+    }
+}
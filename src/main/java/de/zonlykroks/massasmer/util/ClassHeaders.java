@@ -0,0 +1,210 @@
+package de.zonlykroks.massasmer.util;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class headers (access flags, supertypes and member signatures, without code) of classes other
+ * than the one being transformed, read from their class files, for transformers that have to
+ * check what a rewritten call site may access.
+ * <p>
+ * Class files are looked up as resources of the game class loader, which never loads the class,
+ * and reflect the classes as shipped rather than as transformed.
+ */
+public final class ClassHeaders {
+    private static final Map<String, Optional<ClassNode>> HEADERS = new ConcurrentHashMap<>();
+
+    private ClassHeaders() {}
+
+    /**
+     * A field or method found by {@link #resolve}.
+     *
+     * @param owner  The internal name of the declaring class
+     * @param access The member's access flags
+     */
+    public record ResolvedMember(String owner, int access) {}
+
+    /**
+     * Reads a class file.
+     *
+     * @param internalName The internal name of the class
+     * @return The class file bytes, or null if not found
+     */
+    public static byte[] readClass(String internalName) {
+        try (InputStream is = ClassHeaders.class.getClassLoader().getResourceAsStream(internalName + ".class")) {
+            return is == null ? null : ClassByteBuffers.readFully(is);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the header of a class.
+     *
+     * @param internalName The internal name of the class
+     * @return The class without code, or null if its class file was not found
+     */
+    public static ClassNode header(String internalName) {
+        return HEADERS.computeIfAbsent(internalName, name -> {
+            byte[] bytes = readClass(name);
+            if (bytes == null) return Optional.empty();
+            ClassNode node = new ClassNode();
+            new ClassReader(bytes).accept(node, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return Optional.of(node);
+        }).orElse(null);
+    }
+
+    /**
+     * Finds the field or method a reference resolves to, looking at the owner and its superclasses.
+     * Members inherited from interfaces are not resolved.
+     *
+     * @param owner The internal name of the referenced class
+     * @param name  The member name
+     * @param desc  The member descriptor
+     * @param field Whether a field is referenced
+     * @return The resolved member, or null if not found
+     */
+    public static ResolvedMember resolve(String owner, String name, String desc, boolean field) {
+        String current = owner;
+        for (int depth = 0; current != null && depth < 16; depth++) {
+            ClassNode header = header(current);
+            if (header == null) return null;
+
+            if (field) {
+                for (FieldNode candidate : header.fields) {
+                    if (candidate.name.equals(name) && candidate.desc.equals(desc)) return new ResolvedMember(current, candidate.access);
+                }
+            } else {
+                for (MethodNode candidate : header.methods) {
+                    if (candidate.name.equals(name) && candidate.desc.equals(desc)) return new ResolvedMember(current, candidate.access);
+                }
+            }
+            current = header.superName;
+        }
+        return null;
+    }
+
+    /**
+     * Checks that a class may be referenced from another class. Array types check their element type.
+     *
+     * @param internalName The internal name or array descriptor of the referenced class
+     * @param callerName   The internal name of the referencing class
+     * @return true if the class is public or in the caller's package
+     */
+    public static boolean isTypeAccessible(String internalName, String callerName) {
+        String element = internalName;
+        if (element.startsWith("[")) {
+            Type type = Type.getType(element).getElementType();
+            if (type.getSort() != Type.OBJECT) return true;
+            element = type.getInternalName();
+        }
+        if (element.equals(callerName)) return true;
+
+        ClassNode header = header(element);
+        if (header == null) return false;
+        return (header.access & Opcodes.ACC_PUBLIC) != 0 || samePackage(element, callerName);
+    }
+
+    /**
+     * Checks that a field or method may be referenced from another class. Protected members count
+     * as inaccessible, which is conservative.
+     *
+     * @param owner      The internal name of the referenced class
+     * @param name       The member name
+     * @param desc       The member descriptor
+     * @param field      Whether a field is referenced
+     * @param callerName The internal name of the referencing class
+     * @return true if the member is public, or package-private in the caller's package
+     */
+    public static boolean isMemberAccessible(String owner, String name, String desc, boolean field, String callerName) {
+        ResolvedMember member = resolve(owner, name, desc, field);
+        if (member == null) return false;
+        if (member.owner().equals(callerName)) return true;
+        if ((member.access() & Opcodes.ACC_PUBLIC) != 0) return true;
+        if ((member.access() & (Opcodes.ACC_PRIVATE | Opcodes.ACC_PROTECTED)) != 0) return false;
+        return samePackage(member.owner(), callerName);
+    }
+
+    /**
+     * Checks whether initializing a class runs code with visible effects. Accessing a static
+     * member initializes its class first, so a transformer removing the access has to keep it
+     * unless only constants are assigned, which the JVM performs no other visible work for.
+     *
+     * @param owner The class, with code
+     * @return true if its initializer does more than assign constants to its own fields, or a
+     *         superclass other than Object has an initializer or was not found
+     */
+    public static boolean hasInitializer(ClassNode owner) {
+        for (MethodNode method : owner.methods) {
+            if (!method.name.equals("<clinit>")) continue;
+
+            for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+                int opcode = insn.getOpcode();
+                boolean constant = opcode < 0
+                        || (opcode >= Opcodes.ACONST_NULL && opcode <= Opcodes.SIPUSH)
+                        || (insn instanceof LdcInsnNode ldc && (ldc.cst instanceof String || ldc.cst instanceof Number))
+                        || (insn instanceof FieldInsnNode field && opcode == Opcodes.PUTSTATIC && field.owner.equals(owner.name))
+                        || opcode == Opcodes.RETURN;
+                if (!constant) return true;
+            }
+        }
+
+        // Initializing a class initializes its superclasses, whose code is not checked
+        for (String superName = owner.superName; superName != null && !superName.equals("java/lang/Object"); ) {
+            ClassNode header = header(superName);
+            if (header == null) return true;
+            for (MethodNode method : header.methods) {
+                if (method.name.equals("<clinit>")) return true;
+            }
+            superName = header.superName;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a class is another class or one of its subclasses, in which case the other
+     * class is already initialized whenever code of the first one runs.
+     *
+     * @param caller The class to check
+     * @param owner  The internal name of the possible superclass
+     * @return true if {@code owner} is the class itself or one of its superclasses
+     */
+    public static boolean isSubclassOrSelf(ClassNode caller, String owner) {
+        String name = caller.name;
+        String superName = caller.superName;
+        while (!name.equals(owner)) {
+            if (superName == null) return false;
+            ClassNode header = header(superName);
+            if (header == null) return false;
+            name = header.name;
+            superName = header.superName;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether two classes are in the same package.
+     *
+     * @param first  The internal name of the first class
+     * @param second The internal name of the second class
+     * @return true if both are in the same package
+     */
+    public static boolean samePackage(String first, String second) {
+        int firstSlash = first.lastIndexOf('/');
+        int secondSlash = second.lastIndexOf('/');
+        return firstSlash == secondSlash && first.regionMatches(0, second, 0, Math.max(firstSlash, 0));
+    }
+}
@@ -0,0 +1,186 @@
+package de.zonlykroks.massasmer.util;
+
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * A closed-world view of the class hierarchy of the game and all mods, read from their jars.
+ * <p>
+ * The index only knows classes shipped in the game and mod jars. Classes defined at runtime
+ * (lambdas, proxies, hidden classes) and supertypes added by other transformers are missing, so
+ * answers are hints that callers must guard at runtime. Like the {@link CodeSourceIndex}, it is
+ * only built once requested, at the end of pre-launch or lazily on first use.
+ */
+public final class ClassHierarchyIndex {
+    private static final String JAVA_MOD_ID = "java";
+
+    private static volatile boolean requested = false;
+    private static volatile Hierarchy hierarchy;
+    private static final Map<String, Optional<String>> SINGLE_IMPLEMENTATIONS = new ConcurrentHashMap<>();
+
+    private ClassHierarchyIndex() {}
+
+    /**
+     * Header information of an indexed class.
+     *
+     * @param access     The class access flags
+     * @param superName  The internal name of the superclass, null for {@code java/lang/Object}
+     * @param interfaces The internal names of the directly implemented interfaces
+     */
+    public record ClassInfo(int access, String superName, String[] interfaces) {
+        public boolean isConcrete() {
+            return (access & (Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT)) == 0;
+        }
+    }
+
+    private record Hierarchy(Map<String, ClassInfo> classes, Map<String, List<String>> directSubtypes) {}
+
+    /**
+     * Marks the index as needed, so it is built before the first class is transformed.
+     */
+    public static void request() {
+        requested = true;
+    }
+
+    /**
+     * Builds the index if a transformer requested it. Called once the registry is frozen.
+     */
+    public static void buildIfRequested() {
+        if (requested) {
+            hierarchy();
+        }
+    }
+
+    /**
+     * Looks up an indexed class.
+     *
+     * @param internalName The internal name of the class
+     * @return The class info, or null if it is not in the game or mod jars
+     */
+    public static ClassInfo info(String internalName) {
+        return hierarchy().classes().get(internalName);
+    }
+
+    /**
+     * Finds the only concrete class that is, extends or implements the given type, if that class
+     * is final. An {@code instanceof} check against the result is then exact.
+     *
+     * @param internalName The internal name of a class or interface
+     * @return The internal name of the implementation, or null if there is none, more than one, or it is not final
+     */
+    public static String singleFinalImplementation(String internalName) {
+        return SINGLE_IMPLEMENTATIONS.computeIfAbsent(internalName, name -> {
+            Hierarchy current = hierarchy();
+            if (!current.classes().containsKey(name)) return Optional.empty();
+
+            String found = null;
+            Set<String> seen = new HashSet<>();
+            Deque<String> pending = new ArrayDeque<>();
+            pending.push(name);
+            while (!pending.isEmpty()) {
+                String type = pending.pop();
+                if (!seen.add(type)) continue;
+
+                ClassInfo info = current.classes().get(type);
+                if (info != null && info.isConcrete()) {
+                    if (found != null) return Optional.empty();
+                    found = type;
+                }
+                for (String subtype : current.directSubtypes().getOrDefault(type, List.of())) {
+                    pending.push(subtype);
+                }
+            }
+
+            if (found == null || (current.classes().get(found).access() & Opcodes.ACC_FINAL) == 0) return Optional.empty();
+            return Optional.of(found);
+        }).orElse(null);
+    }
+
+    private static Hierarchy hierarchy() {
+        Hierarchy current = hierarchy;
+        if (current == null) {
+            synchronized (ClassHierarchyIndex.class) {
+                current = hierarchy;
+                if (current == null) {
+                    current = build();
+                    hierarchy = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Hierarchy build() {
+        long start = System.nanoTime();
+        Map<String, ClassInfo> classes = new HashMap<>(1 << 16);
+
+        try {
+            for (ModContainer mod : FabricLoader.getInstance().getAllMods()) {
+                // The JDK is not part of the closed world, its types are never answered for
+                if (mod.getMetadata().getId().equals(JAVA_MOD_ID)) continue;
+                for (Path root : mod.getRootPaths()) {
+                    indexDirectory(root, classes);
+                }
+            }
+        } catch (RuntimeException e) {
+            MassasmerPreLaunch.LOGGER.error("Could not build the class hierarchy index, no call will be devirtualized: {}", e.toString());
+        }
+
+        Map<String, List<String>> directSubtypes = new HashMap<>();
+        classes.forEach((name, info) -> {
+            if (info.superName() != null) {
+                directSubtypes.computeIfAbsent(info.superName(), k -> new ArrayList<>()).add(name);
+            }
+            for (String itf : info.interfaces()) {
+                directSubtypes.computeIfAbsent(itf, k -> new ArrayList<>()).add(name);
+            }
+        });
+
+        MassasmerPreLaunch.LOGGER.info("Indexed the hierarchy of {} classes in {} ms",
+                classes.size(), (System.nanoTime() - start) / 1_000_000);
+        return new Hierarchy(Collections.unmodifiableMap(classes), directSubtypes);
+    }
+
+    private static void indexDirectory(Path root, Map<String, ClassInfo> classes) {
+        try (Stream<Path> files = Files.walk(root)) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                Path relative = root.relativize(file);
+                if (relative.getNameCount() == 0 || relative.getName(0).toString().equals("META-INF")) continue;
+
+                String name = file.getFileName().toString();
+                if (!name.endsWith(".class") || name.equals("module-info.class")) continue;
+
+                try {
+                    ClassReader reader = new ClassReader(Files.readAllBytes(file));
+                    classes.putIfAbsent(reader.getClassName(), new ClassInfo(reader.getAccess(), reader.getSuperName(), reader.getInterfaces()));
+                } catch (IOException | RuntimeException e) {
+                    MassasmerPreLaunch.LOGGER.warn("Could not read {} for the hierarchy index: {}", file, e.toString());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            MassasmerPreLaunch.LOGGER.warn("Could not index class hierarchy of {}: {}", root, e.toString());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package de.zonlykroks.massasmer.util;
+
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import net.fabricmc.loader.impl.launch.FabricLauncher;
+import net.fabricmc.loader.impl.launch.FabricLauncherBase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Maps every class name to the jar (or directory) it is loaded from.
+ * <p>
+ * The index is built once, by listing the root paths of every mod and then the remaining launcher
+ * classpath entries, so looking up the origin of a class is a single hash lookup instead of a
+ * resource lookup through the class loader. It is only built when a code-source filter was
+ * created, at the end of pre-launch, or lazily on first use.
+ */
+public final class CodeSourceIndex {
+    private static final String GAME_MOD_ID = "minecraft";
+    private static final String JAVA_MOD_ID = "java";
+
+    private static volatile boolean requested = false;
+    private static volatile Map<String, CodeSource> index;
+
+    private CodeSourceIndex() {}
+
+    /**
+     * Kinds of code sources a class can be loaded from.
+     */
+    public enum Kind {
+        /** The game jar */
+        GAME,
+        /** A mod jar, including nested jar-in-jar mods */
+        MOD,
+        /** A classpath entry that is not a mod, e.g. a game or loader library */
+        LIBRARY,
+        /** Not found in any indexed code source */
+        UNKNOWN
+    }
+
+    /**
+     * The origin of a class.
+     *
+     * @param kind  The kind of code source
+     * @param modId The owning mod ID for {@link Kind#GAME} and {@link Kind#MOD}, null otherwise
+     */
+    public record CodeSource(Kind kind, String modId) {
+        public static final CodeSource LIBRARY = new CodeSource(Kind.LIBRARY, null);
+        public static final CodeSource UNKNOWN = new CodeSource(Kind.UNKNOWN, null);
+    }
+
+    /**
+     * Marks the index as needed, so it is built before the first class is transformed.
+     */
+    public static void request() {
+        requested = true;
+    }
+
+    /**
+     * Builds the index if a code-source filter requested it. Called once the registry is frozen.
+     */
+    public static void buildIfRequested() {
+        if (requested) {
+            index();
+        }
+    }
+
+    /**
+     * Looks up where a class is loaded from.
+     *
+     * @param className The fully qualified class name
+     * @return The code source, {@link CodeSource#UNKNOWN} if the class is not in any indexed source
+     */
+    public static CodeSource sourceOf(String className) {
+        return index().getOrDefault(className, CodeSource.UNKNOWN);
+    }
+
+    private static Map<String, CodeSource> index() {
+        Map<String, CodeSource> current = index;
+        if (current == null) {
+            synchronized (CodeSourceIndex.class) {
+                current = index;
+                if (current == null) {
+                    current = build();
+                    index = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Map<String, CodeSource> build() {
+        long start = System.nanoTime();
+        Map<String, CodeSource> classes = new HashMap<>(1 << 16);
+
+        try {
+            for (ModContainer mod : FabricLoader.getInstance().getAllMods()) {
+                String modId = mod.getMetadata().getId();
+                CodeSource source = modId.equals(GAME_MOD_ID) || modId.equals(JAVA_MOD_ID)
+                        ? new CodeSource(Kind.GAME, modId)
+                        : new CodeSource(Kind.MOD, modId);
+                for (Path root : mod.getRootPaths()) {
+                    indexDirectory(root, source, classes);
+                }
+            }
+
+            FabricLauncher launcher = FabricLauncherBase.getLauncher();
+            if (launcher != null) {
+                // Mod classes are already indexed, so only classes from plain libraries are added here
+                for (Path entry : launcher.getClassPath()) {
+                    if (Files.isDirectory(entry)) {
+                        indexDirectory(entry, CodeSource.LIBRARY, classes);
+                    } else if (Files.isRegularFile(entry)) {
+                        indexJar(entry, CodeSource.LIBRARY, classes);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Without a running loader (e.g. offline pre-transformation) every class is of unknown origin
+            MassasmerPreLaunch.LOGGER.error("Could not build the code source index, code-source filters will not match: {}", e.toString());
+        }
+
+        MassasmerPreLaunch.LOGGER.info("Indexed code sources of {} classes in {} ms",
+                classes.size(), (System.nanoTime() - start) / 1_000_000);
+        return Collections.unmodifiableMap(classes);
+    }
+
+    private static void indexDirectory(Path root, CodeSource source, Map<String, CodeSource> classes) {
+        try (Stream<Path> files = Files.walk(root)) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                Path relative = root.relativize(file);
+                if (relative.getNameCount() == 0 || relative.getName(0).toString().equals("META-INF")) continue;
+
+                String name = file.getFileName().toString();
+                if (!name.endsWith(".class") || name.equals("module-info.class")) continue;
+
+                StringBuilder className = new StringBuilder();
+                for (Path element : relative) {
+                    if (!className.isEmpty()) className.append('.');
+                    className.append(element);
+                }
+                className.setLength(className.length() - ".class".length());
+                classes.putIfAbsent(className.toString(), source);
+            }
+        } catch (IOException | RuntimeException e) {
+            MassasmerPreLaunch.LOGGER.warn("Could not index code source {}: {}", root, e.toString());
+        }
+    }
+
+    private static void indexJar(Path jar, CodeSource source, Map<String, CodeSource> classes) {
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            Iterator<? extends ZipEntry> entries = zip.entries().asIterator();
+            while (entries.hasNext()) {
+                String name = entries.next().getName();
+                if (!name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class")) continue;
+
+                classes.putIfAbsent(name.substring(0, name.length() - ".class".length()).replace('/', '.'), source);
+            }
+        } catch (IOException e) {
+            MassasmerPreLaunch.LOGGER.warn("Could not index code source {}: {}", jar, e.toString());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package de.zonlykroks.massasmer.util;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Small helpers shared by the built-in node transformers.
+ */
+public final class InsnUtils {
+    private InsnUtils() {}
+
+    /**
+     * Gets all labels an instruction may branch to.
+     *
+     * @param insn The instruction to inspect
+     * @return The jump or switch targets, empty for all other instructions
+     */
+    public static List<LabelNode> targetsOf(AbstractInsnNode insn) {
+        if (insn instanceof JumpInsnNode jump) {
+            return List.of(jump.label);
+        }
+        if (insn instanceof TableSwitchInsnNode table) {
+            List<LabelNode> targets = new ArrayList<>(table.labels);
+            targets.add(table.dflt);
+            return targets;
+        }
+        if (insn instanceof LookupSwitchInsnNode lookup) {
+            List<LabelNode> targets = new ArrayList<>(lookup.labels);
+            targets.add(lookup.dflt);
+            return targets;
+        }
+        return List.of();
+    }
+}
@@ -0,0 +1,84 @@
+package de.zonlykroks.massasmer.util;
+
+import de.zonlykroks.massasmer.MassasmerPreLaunch;
+import net.fabricmc.loader.impl.launch.FabricLauncher;
+import net.fabricmc.loader.impl.launch.FabricLauncherBase;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Optional;
+
+/**
+ * Reads raw class bytes from Knot's own class path, without falling back to its parent loader.
+ * <p>
+ * Only such bytes may be handed back to Knot in place of a class it would read itself: a class
+ * on the parent loader is loaded from there, and defining it in the game loader as well would
+ * create a second copy that clashes with the first. The launcher API always allows the parent,
+ * so Knot's class delegate is looked up by reflection once. If that fails, nothing is read.
+ */
+public final class KnotClassBytes {
+    private static volatile Optional<Access> access;
+
+    private KnotClassBytes() {}
+
+    private record Access(Object delegate, Method read) {}
+
+    /**
+     * Reads a class from Knot's own class path.
+     *
+     * @param className The fully qualified class name
+     * @return The raw class bytes, or null if the class is not on Knot's own class path or Knot cannot be reached
+     * @throws IOException if reading the class failed
+     */
+    public static byte[] read(String className) throws IOException {
+        Access current = access().orElse(null);
+        if (current == null) return null;
+
+        try {
+            return (byte[]) current.read().invoke(current.delegate(), className, false);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("Knot could not read " + className, e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IOException("Knot could not read " + className, e);
+        }
+    }
+
+    private static Optional<Access> access() {
+        Optional<Access> current = access;
+        if (current != null) return current;
+
+        synchronized (KnotClassBytes.class) {
+            if (access != null) return access;
+
+            FabricLauncher launcher = FabricLauncherBase.getLauncher();
+            // Not cached, there is no launcher yet or at all when running offline
+            if (launcher == null) return Optional.empty();
+
+            try {
+                ClassLoader loader = launcher.getTargetClassLoader();
+                Object delegate = findMethod(loader.getClass(), "getDelegate").invoke(loader);
+                Method read = findMethod(delegate.getClass(), "getRawClassByteArray", String.class, boolean.class);
+                access = Optional.of(new Access(delegate, read));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                MassasmerPreLaunch.LOGGER.warn("[MassASM] Cannot read from Knot's class path, unchanged classes are left to Knot: {}", e.toString());
+                access = Optional.empty();
+            }
+            return access;
+        }
+    }
+
+    private static Method findMethod(Class<?> type, String name, Class<?>... parameters) throws NoSuchMethodException {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                Method method = current.getDeclaredMethod(name, parameters);
+                method.setAccessible(true);
+                return method;
+            } catch (NoSuchMethodException e) {
+                // Declared further up
+            }
+        }
+        throw new NoSuchMethodException(type.getName() + "." + name);
+    }
+}
@@ -0,0 +1,130 @@
+package de.zonlykroks.massasmer;
+
+import de.zonlykroks.massasmer.filter.Filters;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Loads thousands of generated classes from many threads at once, in a different order on every
+ * thread, and checks that each class is transformed exactly once and every thread gets the same bytes.
+ */
+class MassASMTransformerConcurrencyTest {
+    private static final String PACKAGE = "massasm.test.generated.";
+    private static final int CLASSES = 4000;
+    private static final int THREADS = 16;
+
+    private static final Map<String, byte[]> INPUTS = new HashMap<>();
+    private static final Map<String, AtomicInteger> RAW_RUNS = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicInteger> VISITOR_RUNS = new ConcurrentHashMap<>();
+
+    @BeforeAll
+    static void registerTransformers() throws Exception {
+        // Keeps the config manager away from the Fabric config directory
+        Path config = Files.createTempFile("massasm-test", ".properties");
+        Files.writeString(config, "enable-log=false\ntransformer-exclusions=java.,javax.\nstartup-report=false\n");
+        System.setProperty("massasm.config", config.toString());
+
+        for (int i = 0; i < CLASSES; i++) {
+            String name = PACKAGE + "Generated" + i;
+            INPUTS.put(name, generateClass(name.replace('.', '/'), i));
+        }
+
+        MassASMTransformer.register("test-raw", Filters.startsWith(PACKAGE), (className, classBytes) -> {
+            RAW_RUNS.computeIfAbsent(className, k -> new AtomicInteger()).incrementAndGet();
+            ClassNode node = new ClassNode();
+            new ClassReader(classBytes).accept(node, 0);
+            node.fields.add(new FieldNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "massasmRaw", "I", null, null));
+            ClassWriter writer = new ClassWriter(0);
+            node.accept(writer);
+            return writer.toByteArray();
+        });
+        MassASMTransformer.registerVisitor("test-visitor", Filters.startsWith(PACKAGE), (className, next) -> {
+            VISITOR_RUNS.computeIfAbsent(className, k -> new AtomicInteger()).incrementAndGet();
+            return new ClassVisitor(Opcodes.ASM9, next) {
+                @Override
+                public void visitEnd() {
+                    visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "massasmVisitor", "I", null, null).visitEnd();
+                    super.visitEnd();
+                }
+            };
+        });
+        MassASMTransformer.freeze();
+    }
+
+    @Test
+    void concurrentLoadsTransformEachClassOnceAndAgree() throws Exception {
+        // Fabric's GameTransformer serves its patched classes by name, which stands in for the loader here
+        MassASMTransformer transformer = new MassASMTransformer(new ArrayList<>(), new HashMap<>(INPUTS), true);
+
+        List<String> names = new ArrayList<>(INPUTS.keySet());
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Map<String, byte[]>>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                List<String> order = new ArrayList<>(names);
+                Collections.shuffle(order, new Random(seed));
+                start.await();
+
+                Map<String, byte[]> results = new HashMap<>();
+                for (String name : order) {
+                    results.put(name, transformer.transform(name));
+                }
+                return results;
+            }));
+        }
+
+        List<Map<String, byte[]>> results = new ArrayList<>();
+        for (Future<Map<String, byte[]>> future : futures) {
+            results.add(future.get(2, TimeUnit.MINUTES));
+        }
+        executor.shutdown();
+
+        for (String name : names) {
+            assertEquals(1, RAW_RUNS.get(name).get(), "raw transformer runs for " + name);
+            assertEquals(1, VISITOR_RUNS.get(name).get(), "visitor runs for " + name);
+
+            byte[] expected = results.get(0).get(name);
+            assertNotNull(expected, name + " was not transformed");
+            for (Map<String, byte[]> threadResults : results) {
+                assertArrayEquals(expected, threadResults.get(name), "bytes of " + name + " differ between threads");
+            }
+
+            ClassNode node = new ClassNode();
+            new ClassReader(expected).accept(node, 0);
+            assertEquals(List.of("value", "massasmRaw", "massasmVisitor"), node.fields.stream().map(field -> field.name).toList());
+        }
+    }
+
+    private static byte[] generateClass(String internalName, int value) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V21, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null);
+        writer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "value", "I", null, value).visitEnd();
+
+        MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "value", "()I", null, null);
+        method.visitCode();
+        method.visitLdcInsn(value);
+        method.visitInsn(Opcodes.IRETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
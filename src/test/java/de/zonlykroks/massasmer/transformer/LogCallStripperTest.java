@@ -0,0 +1,107 @@
+package de.zonlykroks.massasmer.transformer;
+
+import de.zonlykroks.massasmer.MassASMTransformer;
+import de.zonlykroks.massasmer.TransformerOptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that log calls whose arguments write locals are left alone, as removing or guarding
+ * the store would change what later code reads from the local.
+ */
+class LogCallStripperTest {
+    private static final String LOGGER = "org/apache/logging/log4j/Logger";
+
+    @BeforeAll
+    static void configure() throws Exception {
+        // Keeps the config manager away from the Fabric config directory
+        if (System.getProperty("massasm.config") == null) {
+            Path config = Files.createTempFile("massasm-test", ".properties");
+            Files.writeString(config, "enable-log=false\nstartup-report=false\n");
+            System.setProperty("massasm.config", config.toString());
+        }
+    }
+
+    @Test
+    void keepsCallWithIncrementInArgument() {
+        byte[] input = generateClass("massasm/test/Increment", true);
+        for (LogCallStripper.Mode mode : LogCallStripper.Mode.values()) {
+            assertNull(stripper(mode).transform("massasm.test.Increment", input), mode + " rewrote a call whose argument increments a local");
+        }
+    }
+
+    @Test
+    void rewritesCallWithoutStores() {
+        byte[] input = generateClass("massasm/test/Plain", false);
+
+        byte[] stripped = stripper(LogCallStripper.Mode.STRIP).transform("massasm.test.Plain", input);
+        assertNotNull(stripped);
+        assertFalse(callsLogger(stripped), "the debug call was not stripped");
+
+        byte[] guarded = stripper(LogCallStripper.Mode.GUARD).transform("massasm.test.Plain", input);
+        assertNotNull(guarded);
+        assertTrue(callsLogger(guarded), "the guarded debug call is gone");
+    }
+
+    private static MassASMTransformer.ClassTransformer stripper(LogCallStripper.Mode mode) {
+        return MassASMTransformer.nodePass(new LogCallStripper(mode, List.of("debug")), TransformerOptions.builder().build());
+    }
+
+    private static boolean callsLogger(byte[] classBytes) {
+        ClassNode node = new ClassNode();
+        new ClassReader(classBytes).accept(node, 0);
+        for (MethodNode method : node.methods) {
+            for (AbstractInsnNode insn : method.instructions) {
+                if (insn instanceof MethodInsnNode call && call.owner.equals(LOGGER) && call.name.equals("debug")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // static int run(Logger log) { int i = 0; log.debug("{}", i++ or i); return i; }
+    private static byte[] generateClass(String internalName, boolean increment) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+        writer.visit(Opcodes.V21, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null);
+
+        MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "(L" + LOGGER + ";)I", null, null);
+        method.visitCode();
+        method.visitInsn(Opcodes.ICONST_0);
+        method.visitVarInsn(Opcodes.ISTORE, 1);
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitLdcInsn("{}");
+        method.visitVarInsn(Opcodes.ILOAD, 1);
+        if (increment) {
+            method.visitIincInsn(1, 1);
+        }
+        method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+        method.visitMethodInsn(Opcodes.INVOKEINTERFACE, LOGGER, "debug", "(Ljava/lang/String;Ljava/lang/Object;)V", true);
+        method.visitVarInsn(Opcodes.ILOAD, 1);
+        method.visitInsn(Opcodes.IRETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}